@@ -0,0 +1,67 @@
+package fun.ceroxe.wcpw;
+
+import com.benjaminwan.ocrlibrary.Point;
+import com.benjaminwan.ocrlibrary.TextBlock;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试共用的样本数据：模拟截图区域 (380x450) 与一张收款通知卡片的 OCR 结果
+ */
+final class BenchmarkFixtures {
+    static final int ROI_WIDTH = 380;
+    static final int ROI_HEIGHT = 450;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * 绘制一帧聊天窗口右下角画面：浅灰背景 + 白色收款卡片
+     */
+    static BufferedImage paymentFrame(int serial, String amount) {
+        BufferedImage image = new BufferedImage(ROI_WIDTH, ROI_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(new Color(0xEDEDED));
+        g.fillRect(0, 0, ROI_WIDTH, ROI_HEIGHT);
+        g.setColor(Color.WHITE);
+        g.fillRoundRect(20, 200, 340, 220, 12, 12);
+        g.setColor(new Color(0x191919));
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 16));
+        g.drawString("微信支付  收款到账通知", 40, 235);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 30));
+        g.drawString("￥" + amount, 40, 290);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+        g.drawString("今日第" + serial + "笔收款，共计￥56.70", 40, 340);
+        g.drawString("14:32", 40, 390);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * 一次 OCR 的典型文字框
+     */
+    static List<TextBlock> paymentBlocks(int serial, String amount) {
+        return List.of(
+                block("微信支付", 40, 220),
+                block("收款到账通知", 120, 220),
+                block("收款金额", 40, 260),
+                block("￥" + amount, 40, 275),
+                block("今日第" + serial + "笔收款，共计￥56.70", 40, 330),
+                block("14:32", 40, 380),
+                block("查看详情", 40, 400)
+        );
+    }
+
+    private static TextBlock block(String text, int x, int y) {
+        ArrayList<Point> box = new ArrayList<>(List.of(
+                new Point(x, y), new Point(x + 120, y), new Point(x + 120, y + 20), new Point(x, y + 20)));
+        return new TextBlock(box, 0.9f, 0, 0.95f, 0, text, new float[0], 0, 0);
+    }
+}
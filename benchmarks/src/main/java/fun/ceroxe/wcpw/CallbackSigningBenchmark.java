@@ -0,0 +1,54 @@
+package fun.ceroxe.wcpw;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回调签名：TreeMap 排序 + 字符串拼接 + MD5
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CallbackSigningBenchmark {
+    private CallbackClient client;
+    private DTOs.CallbackPayload payload;
+
+    @Setup
+    public void setup() throws IOException {
+        Path config = Files.createTempFile("wcpw-bench", ".properties");
+        Files.writeString(config, "server.port=9090\nauth.token=bench\ncallback.secret=YOUR_SHARED_SECRET_KEY\n");
+        AppConfig.reload(config);
+        Files.delete(config);
+
+        client = new CallbackClient((taskId, httpCode) -> {
+        });
+        payload = new DTOs.CallbackPayload("ORDER_001", "SUCCESS", "1768156200000", 1768156230000L, 1.39, "SUCCESS");
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.shutdown();
+    }
+
+    @Benchmark
+    public String buildSignedUrl() {
+        return client.buildSignedUrl("https://nas.example.com/callback?oid=ORDER_001", payload);
+    }
+}
@@ -0,0 +1,67 @@
+package fun.ceroxe.wcpw;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 检测阶段：每帧都要执行的画面变化判断与脏区计算
+ * 参考帧固定为 reference，分别对静止帧 (内容相同的另一张图) 与到账帧 (金额、单号变化) 测量。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameChangeBenchmark {
+    private BufferedImage still;
+    private BufferedImage paid;
+    private MotionDetector motionDetector;
+    private DirtyRegionTracker dirtyTracker;
+
+    @Setup
+    public void setup() {
+        BufferedImage reference = BenchmarkFixtures.paymentFrame(11, "9.90");
+        still = BenchmarkFixtures.paymentFrame(11, "9.90");
+        paid = BenchmarkFixtures.paymentFrame(12, "1.39");
+
+        motionDetector = new MotionDetector(0.05);
+        motionDetector.isChanged(reference);
+        motionDetector.acceptCurrent();
+        dirtyTracker = new DirtyRegionTracker(32);
+        dirtyTracker.diff(reference);
+        dirtyTracker.acceptCurrent();
+    }
+
+    @Benchmark
+    public boolean motionStill() {
+        return motionDetector.isChanged(still);
+    }
+
+    @Benchmark
+    public boolean motionPaid() {
+        return motionDetector.isChanged(paid);
+    }
+
+    @Benchmark
+    public Rectangle dirtyRegionPaid() {
+        return dirtyTracker.diff(paid);
+    }
+
+    @Benchmark
+    public long contentHash() {
+        return OcrResultCache.contentHash(paid);
+    }
+}
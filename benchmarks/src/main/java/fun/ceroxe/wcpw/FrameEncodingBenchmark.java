@@ -0,0 +1,66 @@
+package fun.ceroxe.wcpw;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OCR 输入帧编码：原实现每次扫描写一个 PNG 临时文件，现改为复用缓冲区的 BMP 固定文件
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameEncodingBenchmark {
+    private BufferedImage frame;
+    private OcrFrameWriter writer;
+    private ByteArrayOutputStream png;
+
+    @Setup
+    public void setup() {
+        frame = BenchmarkFixtures.paymentFrame(12, "1.39");
+        writer = new OcrFrameWriter();
+        png = new ByteArrayOutputStream(64 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.release(writer.write(frame));
+    }
+
+    @Benchmark
+    public int pngInMemory() throws IOException {
+        png.reset();
+        ImageIO.write(frame, "png", png);
+        return png.size();
+    }
+
+    @Benchmark
+    public int bmpEncode() {
+        return writer.encodeBmp(frame);
+    }
+
+    @Benchmark
+    public Path bmpWrite() throws IOException {
+        Path path = writer.write(frame);
+        writer.release(path);
+        return path;
+    }
+}
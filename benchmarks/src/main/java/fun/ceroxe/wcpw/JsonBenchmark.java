@@ -0,0 +1,74 @@
+package fun.ceroxe.wcpw;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付接口的 JSON 处理：请求体绑定与响应体编码
+ * string* 为原实现 (字节 -> String -> Gson.fromJson / toJson)，其余为当前实现 (预绑定 TypeAdapter、预编码响应)。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBenchmark {
+    private final Gson gson = new Gson();
+    private final TypeAdapter<DTOs.PaymentRequest> adapter = gson.getAdapter(DTOs.PaymentRequest.class);
+    private byte[] body;
+    private ByteBuffer readyResponse;
+
+    @Setup
+    public void setup() {
+        body = gson.toJson(new DTOs.PaymentRequest("YOUR_API_ACCESS_TOKEN", 1.39, "1768156200000",
+                "https://nas.example.com/callback?oid=ORDER_001")).getBytes(StandardCharsets.UTF_8);
+        byte[] ready = gson.toJson(new DTOs.BaseResponse("READY", "Monitoring Started", null)).getBytes(StandardCharsets.UTF_8);
+        readyResponse = ByteBuffer.allocateDirect(ready.length).put(ready).flip().asReadOnlyBuffer();
+    }
+
+    @Benchmark
+    public DTOs.PaymentRequest stringParseRequest() {
+        return gson.fromJson(new String(body, StandardCharsets.UTF_8), DTOs.PaymentRequest.class);
+    }
+
+    @Benchmark
+    public DTOs.PaymentRequest adapterParseRequest() throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+        reader.setLenient(true);
+        return adapter.read(reader);
+    }
+
+    @Benchmark
+    public String stringReadyResponse() {
+        return gson.toJson(new DTOs.BaseResponse("READY", "Monitoring Started", null));
+    }
+
+    @Benchmark
+    public ByteBuffer preEncodedReadyResponse() {
+        return readyResponse.duplicate();
+    }
+
+    @Benchmark
+    public String pendingResponse() {
+        return gson.toJson(new DTOs.BaseResponse("PENDING", "System Busy", new DTOs.PendingData(42)));
+    }
+}
@@ -0,0 +1,54 @@
+package fun.ceroxe.wcpw;
+
+import com.benjaminwan.ocrlibrary.TextBlock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OCR 结果解析：提取单号与金额候选，并与待支付订单撮合
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NotificationParserBenchmark {
+    private final NotificationParser parser = new NotificationParser();
+    private List<TextBlock> blocks;
+    private long[] pendingCents;
+
+    @Setup
+    public void setup() {
+        blocks = BenchmarkFixtures.paymentBlocks(12, "1.39");
+        // 订单簿中的 20 个待支付金额，命中的在最后
+        pendingCents = new long[20];
+        for (int i = 0; i < pendingCents.length; i++) pendingCents[i] = 1000 + i;
+        pendingCents[pendingCents.length - 1] = 139;
+    }
+
+    @Benchmark
+    public NotificationParser.Parsed parse() {
+        return parser.parse(blocks);
+    }
+
+    @Benchmark
+    public long parseAndMatch() {
+        NotificationParser.Parsed parsed = parser.parse(blocks);
+        for (long cents : pendingCents) {
+            if (parsed.containsAmount(cents)) return parsed.serial() * 1_000_000 + cents;
+        }
+        return -1;
+    }
+}
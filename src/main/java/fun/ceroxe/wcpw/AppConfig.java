@@ -5,15 +5,91 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * 配置中心
+ * 配置文件解析、校验后发布为不可变快照 (volatile 引用)，请求处理中读取的配置都是快照的类型化字段，每个请求只读取一次快照；
+ * 文件变更时重新加载并原子替换快照，校验失败 (缺少必填项、数值项无法解析) 则保留旧快照。
+ * 热更新只影响之后读取配置的逻辑，端口、SSL、线程等启动期配置仍需重启生效。
+ */
 public class AppConfig {
     private static final Logger logger = LoggerFactory.getLogger(AppConfig.class);
     private static final String CONFIG_FILENAME = "config.properties";
-    private static final Properties props = new Properties();
+    private static final long RELOAD_DEBOUNCE_MS = 200;
+
+    // 整数配置项：值非空时必须能解析，否则整个配置被拒绝 (而不是悄悄回退到缺省值)
+    private static final Set<String> INT_KEYS = Set.of(
+            "server.port", "order.timeout.seconds", "order.max.pending",
+            "order.status.max.wait.seconds", "order.status.history", "events.history", "events.keepalive.seconds",
+            "scan.burst.interval.ms", "scan.burst.duration.ms", "scan.motion.interval.ms", "scan.motion.hold.ms",
+            "scan.idle.min.interval.ms", "scan.idle.max.interval.ms", "scan.heartbeat.interval.ms",
+            "security.rate.per.second", "security.rate.burst", "security.query.rate.per.second", "security.query.rate.burst",
+            "callback.retry.count", "callback.retry.interval.ms", "callback.max.concurrent", "callback.max.per.host",
+            "callback.redeliver.interval.ms", "callback.pool.idle.per.host", "callback.pool.keepalive.seconds",
+            "callback.batch.window.ms", "callback.batch.max",
+            "journal.size.kb", "journal.checkpoint.interval.ms",
+            "ssl.session.cache.size", "ssl.session.timeout.seconds", "ssl.reload.interval.seconds",
+            "ocr.threads", "ocr.cache.size"
+    );
+    private static final Set<String> DOUBLE_KEYS = Set.of("scan.idle.backoff", "capture.replay.speed");
+    // 必须为正数的配置项 (限流速率 / 桶容量为 0 或负数时限流器无法工作)
+    private static final Set<String> POSITIVE_KEYS = Set.of(
+            "security.rate.per.second", "security.rate.burst", "security.query.rate.per.second", "security.query.rate.burst"
+    );
+
+    /**
+     * 配置快照：运行期 (每个请求 / 每次回调) 读取的配置为类型化字段，热更新立即生效
+     *
+     * @param metricsToken 为空表示指标接口不鉴权
+     * @param values       全部原始配置项 (不可变)，供启动期的 get / getInt 查询
+     */
+    public record Snapshot(
+            int serverPort,
+            String authToken,
+            String callbackSecret,
+            int orderTimeoutSeconds,
+            int callbackRetryCount,
+            long callbackRetryIntervalMs,
+            String metricsToken,
+            int orderStatusMaxWaitSeconds,
+            Map<String, String> values
+    ) {
+        static Snapshot of(Properties props) {
+            Map<String, String> values = new HashMap<>();
+            for (String key : props.stringPropertyNames()) {
+                values.put(key, props.getProperty(key).trim());
+            }
+            validate(values);
+            return new Snapshot(
+                    Integer.parseInt(values.get("server.port")),
+                    values.get("auth.token"),
+                    values.get("callback.secret"),
+                    intValue(values, "order.timeout.seconds", 300),
+                    intValue(values, "callback.retry.count", 3),
+                    intValue(values, "callback.retry.interval.ms", 2000),
+                    values.getOrDefault("metrics.token", ""),
+                    intValue(values, "order.status.max.wait.seconds", 30),
+                    Map.copyOf(values)
+            );
+        }
+    }
+
+    private static volatile Snapshot current;
 
     public static void init() {
         Path localConfigPath = Paths.get(CONFIG_FILENAME);
@@ -32,40 +108,152 @@ public class AppConfig {
             }
         }
 
-        try (InputStream in = Files.newInputStream(localConfigPath)) {
-            props.load(in);
-            validateConfig();
+        try {
+            current = load(localConfigPath);
         } catch (IOException e) {
             throw new RuntimeException("读取配置文件失败", e);
         }
     }
 
-    private static void validateConfig() {
+    /**
+     * 当前配置快照
+     */
+    public static Snapshot current() {
+        return current;
+    }
+
+    /**
+     * 监听配置文件变更并热加载 (后台守护线程)
+     */
+    public static void startWatching() {
+        Path file = Paths.get(CONFIG_FILENAME).toAbsolutePath();
+        Thread watcher = new Thread(() -> watch(file), "wcpw-config-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    static Snapshot load(Path path) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            props.load(in);
+        }
+        return Snapshot.of(props);
+    }
+
+    /**
+     * 重新加载配置，成功返回 true；校验失败保留旧快照
+     */
+    static boolean reload(Path path) {
+        Snapshot next;
+        try {
+            next = load(path);
+        } catch (Exception e) {
+            logger.error("❌ 配置重新加载失败，继续使用旧配置: {}", e.getMessage());
+            return false;
+        }
+
+        Snapshot previous = current;
+        if (previous != null && previous.equals(next)) return true;
+        current = next;
+
+        // 只输出变更的键名，避免日志泄露 Token / 密钥
+        TreeSet<String> changed = new TreeSet<>(next.values().keySet());
+        if (previous != null) {
+            changed.addAll(previous.values().keySet());
+            changed.removeIf(key -> Objects.equals(previous.values().get(key), next.values().get(key)));
+        }
+        logger.info("🔄 配置已重新加载 | 变更项: {}", changed);
+        return true;
+    }
+
+    private static void watch(Path file) {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            // 监听所在目录：编辑器常以 "写临时文件 + 重命名" 方式保存
+            file.getParent().register(service,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            while (true) {
+                WatchKey key = service.take();
+                boolean touched = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) touched = true;
+                }
+                key.reset();
+                if (!touched) continue;
+
+                // 一次保存可能触发多次事件，稍等后合并处理
+                Thread.sleep(RELOAD_DEBOUNCE_MS);
+                WatchKey extra;
+                while ((extra = service.poll()) != null) {
+                    extra.pollEvents();
+                    extra.reset();
+                }
+                reload(file);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("❌ 无法监听配置文件变更，热加载已关闭", e);
+        }
+    }
+
+    private static void validate(Map<String, String> values) {
         // 【关键修改】加入 callback.secret 为必填项，用于签名
         String[] requiredKeys = {"server.port", "auth.token", "callback.secret"};
         for (String key : requiredKeys) {
-            if (props.getProperty(key) == null || props.getProperty(key).isBlank()) {
+            if (values.get(key) == null || values.get(key).isBlank()) {
                 throw new RuntimeException("❌ 配置文件错误: 缺少关键项 [" + key + "]");
             }
         }
+        for (String key : INT_KEYS) {
+            if (intValue(values, key, 1) <= 0 && POSITIVE_KEYS.contains(key)) {
+                throw new RuntimeException("❌ 配置文件错误: " + key + " 必须大于 0 [" + values.get(key) + "]");
+            }
+        }
+        for (String key : DOUBLE_KEYS) {
+            doubleValue(values, key, 0);
+        }
+        // 回放倍速：0 为手动步进，负数 / NaN 无意义
+        if (!(doubleValue(values, "capture.replay.speed", 1.0) >= 0)) {
+            throw new RuntimeException("❌ 配置文件错误: capture.replay.speed 不能为负数 [" + values.get("capture.replay.speed") + "]");
+        }
     }
 
-    public static int getInt(String key) {
-        return Integer.parseInt(get(key));
+    private static double doubleValue(Map<String, String> values, String key, double defaultValue) {
+        String val = values.get(key);
+        if (val == null || val.isBlank()) return defaultValue;
+        try {
+            return Double.parseDouble(val);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("❌ 配置文件错误: " + key + " 不是有效数字 [" + val + "]");
+        }
     }
 
-    public static int getInt(String key, int defaultValue) {
-        String val = props.getProperty(key);
+    private static int intValue(Map<String, String> values, String key, int defaultValue) {
+        String val = values.get(key);
         if (val == null || val.isBlank()) return defaultValue;
         try {
-            return Integer.parseInt(val.trim());
+            return Integer.parseInt(val);
         } catch (NumberFormatException e) {
-            return defaultValue;
+            throw new RuntimeException("❌ 配置文件错误: " + key + " 不是有效整数 [" + val + "]");
         }
     }
 
+    public static int getInt(String key) {
+        return Integer.parseInt(get(key));
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        Snapshot snapshot = current;
+        return snapshot == null ? defaultValue : intValue(snapshot.values(), key, defaultValue);
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        Snapshot snapshot = current;
+        return snapshot == null ? defaultValue : doubleValue(snapshot.values(), key, defaultValue);
+    }
+
     public static String get(String key) {
-        String val = props.getProperty(key);
-        return val == null ? null : val.trim();
+        Snapshot snapshot = current;
+        return snapshot == null ? null : snapshot.values().get(key);
     }
-}
\ No newline at end of file
+}
@@ -7,58 +7,88 @@ import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.FileAppender;
 import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.Headers;
-import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
-import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+import org.xnio.XnioExecutor;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.openssl.PEMKeyPair;
-import org.bouncycastle.openssl.PEMParser;
-import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.InputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.KeyStore;
-import java.security.PrivateKey;
 import java.security.Security;
-import java.security.cert.Certificate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Deque;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class Application {
     private static final org.slf4j.Logger logger = LoggerFactory.getLogger(Application.class);
     private static final Gson gson = new Gson();
-
-    private static final AtomicBoolean isPending = new AtomicBoolean(false);
-    private static final AtomicLong currentTaskEndTime = new AtomicLong(0);
+    private static final TypeAdapter<DTOs.PaymentRequest> PAYMENT_REQUEST_ADAPTER = gson.getAdapter(DTOs.PaymentRequest.class);
+    private static final long MAX_BODY_BYTES = 16 * 1024;
+    // AppCDS 训练运行 (mvn -P appcds package)：完整走一遍启动流程后退出，JVM 退出时写出类归档
+    private static final boolean CDS_TRAINING = Boolean.getBoolean("wcpw.cds.training");
+
+    // 固定内容的响应体，启动时编码一次
+    private static final ByteBuffer RESP_READY = encode(new DTOs.BaseResponse("READY", "Monitoring Started", null));
+    private static final ByteBuffer RESP_INVALID = encode(new DTOs.BaseResponse("ERROR", "Invalid Parameters", null));
+    private static final ByteBuffer RESP_UNAUTHORIZED = encode(new DTOs.BaseResponse("UNAUTHORIZED", "Invalid Token", null));
+    private static final ByteBuffer RESP_ENGINE_READY = encode(new DTOs.BaseResponse("READY", "OCR Engine Ready", null));
+    private static final ByteBuffer RESP_ORDER_NOT_FOUND = encode(new DTOs.BaseResponse("NOT_FOUND", "Unknown Order", null));
+    private static final ByteBuffer RESP_ENGINE_STARTING = encode(new DTOs.BaseResponse("STARTING", "OCR Engine Starting", null));
+    private static final AtomicReferenceArray<ByteBuffer> RESP_PENDING = new AtomicReferenceArray<>(3601);
+
+    private static final Metrics.Counter REQ_READY = requestOutcome("ready");
+    private static final Metrics.Counter REQ_PENDING = requestOutcome("pending");
+    private static final Metrics.Counter REQ_INVALID = requestOutcome("invalid");
+    private static final Metrics.Counter REQ_UNAUTHORIZED = requestOutcome("unauthorized");
+    private static final Metrics.Counter REQ_ERROR = requestOutcome("error");
+    private static final Metrics.Counter REQ_STARTING = requestOutcome("starting");
+
+    // 监控循环是否在运行 (订单簿非空时才需要)
+    private static final AtomicBoolean watcherRunning = new AtomicBoolean(false);
 
     private static final ExecutorService monitorExecutor = Executors.newSingleThreadExecutor();
-    private static final ExecutorService callbackExecutor = Executors.newCachedThreadPool();
+    private static final ScheduledExecutorService journalExecutor = Executors.newSingleThreadScheduledExecutor();
 
-    private static WeChatMonitorService monitorService;
+    private static PaymentMonitor monitorService;
     private static CallbackClient callbackClient;
+    private static OrderBook orderBook;
+    private static OrderStatusBoard statusBoard;
+    private static PaymentEventStream eventStream;
+    private static OrderJournal journal; // 未启用时为 null
 
     public static void main(String[] args) {
         initLogging();
 
+        // OCR 原生库与模型解压到工作目录下，重启后经 CRC 校验直接复用 (见 NativeLibCache)
         String currentDir = System.getProperty("user.dir");
         File tempDir = new File(currentDir, "ocr_native_libs");
         if (!tempDir.exists()) tempDir.mkdirs();
@@ -66,17 +96,54 @@ public class Application {
 
         Security.addProvider(new BouncyCastleProvider());
         AppConfig.init();
+        AppConfig.startWatching();
+
+        // OCR 引擎 (原生库 + 模型加载 + 预热) 与 HTTP 服务并行启动，端口先开始监听，引擎就绪状态见 health.ready.path
+        CompletableFuture<PaymentMonitor> engine = new CompletableFuture<>();
+        new Thread(() -> initEngine(engine), "wcpw-ocr-init").start();
+        start(new DeferredMonitor(engine));
+
+        if (CDS_TRAINING) {
+            engine.handle((monitor, e) -> null).join();
+            logger.info("📦 [AppCDS] 训练运行结束，写出类归档");
+            System.exit(0);
+        }
+    }
 
+    private static void initEngine(CompletableFuture<PaymentMonitor> engine) {
         try {
             logger.info("⚙️ 正在启动 OCR 引擎...");
-            monitorService = new WeChatMonitorService();
+            engine.complete(new WeChatMonitorService(FrameSource.fromConfig()));
+            logger.info("✅ OCR 引擎已就绪 | 进程启动后 {}ms", ManagementFactory.getRuntimeMXBean().getUptime());
         } catch (Throwable e) {
+            engine.completeExceptionally(e);
+            if (CDS_TRAINING) {
+                // 构建机通常没有桌面，截图 / OCR 相关类不进入归档，不影响其余部分
+                logger.warn("⚠️ [AppCDS] OCR 引擎未启动: {}", e.toString());
+                return;
+            }
             logger.error("❌ OCR 引擎启动失败 (请检查 libgomp1 / libgl1-mesa-glx)", e);
             System.exit(1);
         }
+    }
 
-        callbackClient = new CallbackClient();
-        startUndertowServer();
+    /**
+     * 以指定的到账检测器启动订单簿、回调、订单日志与 HTTP 服务 (需先完成 AppConfig 初始化)
+     * 压测工具通过这里注入合成检测器，在无屏幕、无 OCR 的环境下运行完整的接口与回调链路。
+     */
+    static Undertow start(PaymentMonitor monitor) {
+        monitorService = monitor;
+        callbackClient = new CallbackClient(Application::onCallbackSettled);
+        orderBook = new OrderBook(AppConfig.getInt("order.max.pending", 20));
+        statusBoard = new OrderStatusBoard(AppConfig.getInt("order.status.history", 1024));
+        eventStream = new PaymentEventStream(AppConfig.getInt("events.history", 1024),
+                AppConfig.getInt("events.keepalive.seconds", 15) * 1000L);
+        Metrics.gauge("wcpw_orders_pending", "Orders waiting for payment", orderBook::size);
+        Metrics.gauge("wcpw_order_polls_waiting", "Order status long-polls waiting for a result", statusBoard::waiting);
+        Metrics.gauge("wcpw_event_subscribers", "Open payment event (SSE) subscriptions", eventStream::subscribers);
+        Metrics.gauge("wcpw_ready", "1 once the OCR engine is loaded and warmed up", () -> monitorService.isReady() ? 1 : 0);
+        recoverFromJournal();
+        return startUndertowServer();
     }
 
     private static void initLogging() {
@@ -115,18 +182,20 @@ public class Application {
         }
     }
 
-    private static void startUndertowServer() {
-        int port = AppConfig.getInt("server.port");
+    private static Undertow startUndertowServer() {
+        int port = AppConfig.current().serverPort();
         String certPathStr = AppConfig.get("ssl.cert.path");
         String keyPathStr = AppConfig.get("ssl.key.path");
 
+        TlsContextManager tls = null;
         SSLContext sslContext = null;
         try {
             if (certPathStr != null && !certPathStr.isBlank() && keyPathStr != null && !keyPathStr.isBlank()) {
                 Path certPath = Paths.get(certPathStr);
                 Path keyPath = Paths.get(keyPathStr);
                 if (Files.exists(certPath) && Files.exists(keyPath)) {
-                    sslContext = createSSLContext(keyPath, certPath);
+                    tls = new TlsContextManager(certPath, keyPath);
+                    sslContext = tls.load();
                 }
             }
         } catch (Exception e) {
@@ -143,79 +212,278 @@ public class Application {
             logger.info("🚀 服务启动 (HTTP) Port: {}", port);
         }
 
+        // HTTP/2：HTTPS 下经 ALPN 协商，业务后端可在一条连接上复用多个请求
+        builder.setServerOption(UndertowOptions.ENABLE_HTTP2, true);
+        // 请求体很小，限制实体大小防止恶意大包
+        builder.setServerOption(UndertowOptions.MAX_ENTITY_SIZE, MAX_BODY_BYTES);
+
         // 核心逻辑逻辑：定义业务处理器
-        HttpHandler businessHandler = new HttpHandler() {
-            @Override
-            public void handleRequest(HttpServerExchange exchange) throws Exception {
-                // Undertow 习惯用法：如果是 IO 线程则分发到 Worker 线程，以防阻塞 IO
-                if (exchange.isInIoThread()) {
-                    exchange.dispatch(this);
-                    return;
-                }
-                if (exchange.getRequestMethod().equalToString("POST")) {
-                    handlePaymentRequest(exchange);
+        // 请求体异步收齐后在 IO 线程上处理：登记订单、写日志均不阻塞，不需要 Worker 线程
+        String metricsPath = AppConfig.get("metrics.path");
+        String readyPath = AppConfig.get("health.ready.path");
+        String statusPath = AppConfig.get("order.status.path");
+        String eventsPath = AppConfig.get("events.path");
+        HttpHandler businessHandler = exchange -> {
+            if (metricsPath != null && !metricsPath.isBlank()
+                    && exchange.getRequestMethod().equalToString("GET") && metricsPath.equals(exchange.getRequestPath())) {
+                handleMetrics(exchange);
+            } else if (readyPath != null && !readyPath.isBlank()
+                    && exchange.getRequestMethod().equalToString("GET") && readyPath.equals(exchange.getRequestPath())) {
+                handleReady(exchange);
+            } else if (statusPath != null && !statusPath.isBlank()
+                    && exchange.getRequestMethod().equalToString("GET") && statusPath.equals(exchange.getRequestPath())) {
+                handleOrderStatus(exchange);
+            } else if (eventsPath != null && !eventsPath.isBlank()
+                    && exchange.getRequestMethod().equalToString("GET") && eventsPath.equals(exchange.getRequestPath())) {
+                if (authorized(exchange, AppConfig.current())) {
+                    eventStream.handler().handleRequest(exchange);
                 } else {
-                    exchange.setStatusCode(405);
+                    REQ_UNAUTHORIZED.inc();
+                    sendJson(exchange, StatusCodes.UNAUTHORIZED, RESP_UNAUTHORIZED);
                 }
+            } else if (exchange.getRequestMethod().equalToString("POST")) {
+                exchange.getRequestReceiver().receiveFullBytes(Application::handlePaymentRequest,
+                        (ex, e) -> {
+                            logger.warn("⚠️ [API] 读取请求体失败 | IP: {} | {}", ex.getSourceAddress(), e.getMessage());
+                            REQ_INVALID.inc();
+                            sendJson(ex, 400, RESP_INVALID);
+                        });
+            } else {
+                exchange.setStatusCode(405);
             }
         };
 
         // 应用安全延迟包装器 (纯升级，无副作用)
-        builder.setHandler(new SecurityDelayHandler(businessHandler));
+        // 下单与查询 / 推送各用一组按 IP 的令牌桶，NAT 后的业务后端长轮询、重连不会挤占下单额度；探针与指标接口不限流
+        RateLimiter payLimiter = RateLimiter.fromConfig();
+        RateLimiter queryLimiter = RateLimiter.fromConfig("security.query", 50, 200);
+        Metrics.counter("wcpw_requests_total", "API requests by outcome", "result=\"rate_limited\"",
+                () -> payLimiter.rejected() + queryLimiter.rejected());
+        builder.setHandler(new SecurityDelayHandler(businessHandler, exchange -> {
+            String path = exchange.getRequestPath();
+            if (path.equals(readyPath) || path.equals(metricsPath)) return null;
+            if (path.equals(statusPath) || path.equals(eventsPath)) return queryLimiter;
+            return payLimiter;
+        }));
 
         Undertow server = builder.build();
         server.start();
-        logger.info("✅ 微信支付守卫已就绪 | 等待请求...");
+        if (tls != null) tls.watch(server);
+        if (monitorService.isReady()) {
+            logger.info("✅ 微信支付守卫已就绪 | 等待请求...");
+        } else {
+            logger.info("✅ 接口已开始监听 | OCR 引擎就绪前下单返回 503，就绪后开始接单");
+        }
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             server.stop();
             monitorExecutor.shutdownNow();
-            callbackExecutor.shutdownNow();
+            callbackClient.shutdown();
+            if (monitorService instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.error("❌ 截图来源关闭失败", e);
+                }
+            }
+            // 先写完已提交的日志记录，再关闭日志
+            journalExecutor.shutdown();
+            try {
+                journalExecutor.awaitTermination(2, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (Exception e) {
+                    logger.error("❌ 订单日志关闭失败", e);
+                }
+            }
         }));
+        return server;
     }
 
-    private static void handlePaymentRequest(HttpServerExchange exchange) {
+    private static void handlePaymentRequest(HttpServerExchange exchange, byte[] body) {
         try {
-            exchange.startBlocking();
-            String body = new String(exchange.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-            DTOs.PaymentRequest req = gson.fromJson(body, DTOs.PaymentRequest.class);
+            DTOs.PaymentRequest req = parsePaymentRequest(body);
 
             if (req == null || req.money() <= 0 || req.callbackUrl() == null) {
-                logger.warn("⚠️ [API] 参数无效: {}", body);
-                sendJson(exchange, 400, new DTOs.BaseResponse("ERROR", "Invalid Parameters", null));
+                logger.warn("⚠️ [API] 参数无效: {}", new String(body, StandardCharsets.UTF_8));
+                REQ_INVALID.inc();
+                sendJson(exchange, 400, RESP_INVALID);
                 return;
             }
 
-            String serverToken = AppConfig.get("auth.token");
-            if (!serverToken.equals(req.token())) {
+            // 每个请求只读取一次快照，配置热更新后立即生效
+            AppConfig.Snapshot config = AppConfig.current();
+            if (!config.authToken().equals(req.token())) {
                 logger.warn("⛔ [API] 鉴权失败 | IP: {} | Token: {}", exchange.getSourceAddress(), req.token());
-                sendJson(exchange, 401, new DTOs.BaseResponse("UNAUTHORIZED", "Invalid Token", null));
+                REQ_UNAUTHORIZED.inc();
+                sendJson(exchange, 401, RESP_UNAUTHORIZED);
                 return;
             }
 
-            if (isPending.compareAndSet(false, true)) {
-                int timeoutSec = AppConfig.getInt("order.timeout.seconds");
-                currentTaskEndTime.set(System.currentTimeMillis() + (timeoutSec * 1000L));
+            // 检测开始时以当前单号为基准，引擎加载期间完成的付款不会被识别为新到账：就绪前不接单，由业务系统稍后重试
+            if (!monitorService.isReady()) {
+                logger.info("⏳ [API] OCR 引擎启动中，暂不接收任务 | IP: {}", exchange.getSourceAddress());
+                REQ_STARTING.inc();
+                exchange.getResponseHeaders().put(Headers.RETRY_AFTER, "1");
+                sendJson(exchange, StatusCodes.SERVICE_UNAVAILABLE, RESP_ENGINE_STARTING);
+                return;
+            }
 
-                String taskId = extractOid(req.callbackUrl());
+            int timeoutSec = config.orderTimeoutSeconds();
+            String taskId = extractOid(req.callbackUrl());
+            long now = System.currentTimeMillis();
+            OrderBook.Order order = new OrderBook.Order(
+                    taskId, req, OrderBook.toCents(req.money()), now, now + (timeoutSec * 1000L));
+
+            OrderBook.Order blocker;
+            // 在订单簿锁内提交日志：检测线程撮合该订单后提交的 RESOLVED 一定排在 ADMIT 之后
+            synchronized (orderBook) {
+                blocker = orderBook.admit(order);
+                if (blocker == null) journal(j -> j.recordAdmit(order));
+            }
+            if (blocker == null) {
                 logger.info("📥 [API] 接收任务 [{}] | 目标: ¥{} | 回调: {}", taskId, req.money(), req.callbackUrl());
-
-                monitorExecutor.submit(() -> runMonitorTask(taskId, req, timeoutSec));
-
-                sendJson(exchange, 200, new DTOs.BaseResponse("READY", "Monitoring Started", null));
+                monitorService.onOrderAdmitted(taskId);
+                startWatcherIfIdle();
+                REQ_READY.inc();
+                sendJson(exchange, 200, RESP_READY);
             } else {
-                long timeLeft = currentTaskEndTime.get() - System.currentTimeMillis();
+                // 同金额订单无法区分付款人，必须等前一单结束
+                long timeLeft = blocker.deadline() - System.currentTimeMillis();
                 int waitSec = (timeLeft > 0) ? (int) (timeLeft / 1000) + 1 : 0;
-                logger.info("⏳ [API] 系统忙碌，拒绝新请求 (剩余 {}s)", waitSec);
-                sendJson(exchange, 200, new DTOs.BaseResponse("PENDING", "System Busy", new DTOs.PendingData(waitSec)));
+                logger.info("⏳ [API] 任务 [{}] 与进行中的订单 [{}] 冲突，拒绝新请求 (剩余 {}s)", taskId, blocker.taskId(), waitSec);
+                REQ_PENDING.inc();
+                sendJson(exchange, 200, pendingResponse(waitSec));
             }
         } catch (Exception e) {
             logger.error("❌ [API] 内部错误", e);
-            isPending.set(false);
+            REQ_ERROR.inc();
             sendJson(exchange, 500, new DTOs.BaseResponse("ERROR", e.getMessage(), null));
         }
     }
 
+    /**
+     * Prometheus 抓取接口；配置了 metrics.token 时要求 Bearer 鉴权
+     */
+    private static void handleMetrics(HttpServerExchange exchange) {
+        String token = AppConfig.current().metricsToken();
+        if (!token.isBlank()
+                && !("Bearer " + token).equals(exchange.getRequestHeaders().getFirst(Headers.AUTHORIZATION))) {
+            exchange.setStatusCode(StatusCodes.UNAUTHORIZED);
+            exchange.endExchange();
+            return;
+        }
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain; version=0.0.4; charset=utf-8");
+        exchange.getResponseSender().send(Metrics.render());
+    }
+
+    /**
+     * 订单状态查询：GET {order.status.path}?oid=xxx[&wait=秒]，需携带 Authorization: Bearer {auth.token}
+     * 已结束返回 SUCCESS / TIMEOUT (data 与回调内容一致)，等待支付返回 WAITING (data.waitSeconds 为距超时的秒数)。
+     * 带 wait 时为长轮询：请求挂在 IO 线程上 (不占用 Worker 线程)，订单结束立即返回，最多等待 wait 秒后返回当前状态。
+     */
+    private static void handleOrderStatus(HttpServerExchange exchange) {
+        AppConfig.Snapshot config = AppConfig.current();
+        if (!authorized(exchange, config)) {
+            REQ_UNAUTHORIZED.inc();
+            sendJson(exchange, StatusCodes.UNAUTHORIZED, RESP_UNAUTHORIZED);
+            return;
+        }
+        String oid = queryParam(exchange, "oid");
+        if (oid == null || oid.isBlank()) {
+            REQ_INVALID.inc();
+            sendJson(exchange, StatusCodes.BAD_REQUEST, RESP_INVALID);
+            return;
+        }
+
+        // 订单从订单簿移除到结果发布之间有短暂间隙，查不到时再看一次结果
+        DTOs.CallbackPayload result = statusBoard.lookup(oid);
+        OrderBook.Order order = result == null ? orderBook.find(oid) : null;
+        if (result == null && order == null) result = statusBoard.lookup(oid);
+        if (result != null) {
+            sendJson(exchange, StatusCodes.OK, new DTOs.BaseResponse(result.status(), "Order Resolved", result));
+            return;
+        }
+        if (order == null) {
+            sendJson(exchange, StatusCodes.NOT_FOUND, RESP_ORDER_NOT_FOUND);
+            return;
+        }
+
+        int waitSec = 0;
+        try {
+            String wait = queryParam(exchange, "wait");
+            if (wait != null) waitSec = Math.min(Integer.parseInt(wait), config.orderStatusMaxWaitSeconds());
+        } catch (NumberFormatException e) {
+            REQ_INVALID.inc();
+            sendJson(exchange, StatusCodes.BAD_REQUEST, RESP_INVALID);
+            return;
+        }
+        if (waitSec <= 0) {
+            sendJson(exchange, StatusCodes.OK, waitingResponse(order));
+        } else {
+            awaitResolution(exchange, order, waitSec);
+        }
+    }
+
+    /**
+     * 挂起长轮询请求：订单结束与等待超时只有先到的一方发送响应
+     */
+    private static void awaitResolution(HttpServerExchange exchange, OrderBook.Order order, int waitSec) {
+        String oid = order.taskId();
+        AtomicBoolean answered = new AtomicBoolean(false);
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+            Runnable cancel = statusBoard.await(oid, payload -> exchange.getIoThread().execute(() -> {
+                if (answered.compareAndSet(false, true)) {
+                    sendJson(exchange, StatusCodes.OK, new DTOs.BaseResponse(payload.status(), "Order Resolved", payload));
+                }
+            }));
+            XnioExecutor.Key timer = exchange.getIoThread().executeAfter(() -> {
+                if (answered.compareAndSet(false, true)) sendJson(exchange, StatusCodes.OK, waitingResponse(order));
+            }, waitSec, TimeUnit.SECONDS);
+            exchange.addExchangeCompleteListener((ex, next) -> {
+                cancel.run();
+                timer.remove();
+                next.proceed();
+            });
+        });
+    }
+
+    /**
+     * 查询 / 订阅接口的鉴权：Authorization: Bearer {auth.token}
+     */
+    private static boolean authorized(HttpServerExchange exchange, AppConfig.Snapshot config) {
+        return ("Bearer " + config.authToken()).equals(exchange.getRequestHeaders().getFirst(Headers.AUTHORIZATION));
+    }
+
+    private static DTOs.BaseResponse waitingResponse(OrderBook.Order order) {
+        long timeLeft = order.deadline() - System.currentTimeMillis();
+        int waitSec = (timeLeft > 0) ? (int) (timeLeft / 1000) + 1 : 0;
+        return new DTOs.BaseResponse("WAITING", "Awaiting Payment", new DTOs.PendingData(waitSec));
+    }
+
+    private static String queryParam(HttpServerExchange exchange, String name) {
+        Deque<String> values = exchange.getQueryParameters().get(name);
+        return values == null ? null : values.peekFirst();
+    }
+
+    /**
+     * 就绪探针：OCR 引擎加载并预热完毕返回 200 READY，否则 503 STARTING (端口可连通即代表进程存活)
+     */
+    private static void handleReady(HttpServerExchange exchange) {
+        if (monitorService.isReady()) {
+            sendJson(exchange, StatusCodes.OK, RESP_ENGINE_READY);
+        } else {
+            sendJson(exchange, StatusCodes.SERVICE_UNAVAILABLE, RESP_ENGINE_STARTING);
+        }
+    }
+
+    private static Metrics.Counter requestOutcome(String result) {
+        return Metrics.counter("wcpw_requests_total", "API requests by outcome", "result=\"" + result + "\"");
+    }
+
     private static String extractOid(String url) {
         try {
             if (url.contains("oid=")) {
@@ -230,95 +498,168 @@ public class Application {
         return UUID.randomUUID().toString().substring(0, 8);
     }
 
-    private static void runMonitorTask(String taskId, DTOs.PaymentRequest req, int timeoutSec) {
+    private static void startWatcherIfIdle() {
+        if (watcherRunning.compareAndSet(false, true)) {
+            monitorExecutor.submit(Application::runWatcher);
+        }
+    }
+
+    private static void runWatcher() {
         try {
-            boolean success = monitorService.monitorPayment(taskId, req.money(), timeoutSec);
-            String status = success ? "SUCCESS" : "TIMEOUT";
-
-            DTOs.CallbackPayload payload = new DTOs.CallbackPayload(
-                    taskId,
-                    status,
-                    req.timestamp(),
-                    System.currentTimeMillis(),
-                    req.money(),
-                    status
-            );
-
-            callbackExecutor.submit(() -> {
-                callbackClient.sendCallback(taskId, req.callbackUrl(), payload);
-                isPending.set(false);
-                logger.info("🔓 [API] 任务 [{}] 结束，锁已释放", taskId);
-            });
+            monitorService.watch(orderBook, Application::onOrderResolved);
+        } catch (Exception e) {
+            logger.error("💥 [API] 监控循环崩溃", e);
+        } finally {
+            watcherRunning.set(false);
+            // 退出循环与新订单登记之间可能存在竞态，复查一次
+            if (!orderBook.isEmpty()) startWatcherIfIdle();
+        }
+    }
+
+    private static void onOrderResolved(OrderBook.Order order, boolean success) {
+        String taskId = order.taskId();
+        DTOs.PaymentRequest req = order.request();
+        String status = success ? "SUCCESS" : "TIMEOUT";
+
+        DTOs.CallbackPayload payload = new DTOs.CallbackPayload(
+                taskId,
+                status,
+                req.timestamp(),
+                System.currentTimeMillis(),
+                req.money(),
+                status
+        );
+
+        journal(j -> j.recordResolved(new OrderJournal.PendingCallback(taskId, req.callbackUrl(), payload)));
+        statusBoard.publish(payload);
+        eventStream.publish(payload);
+        // 异步投递，重试与并发上限由 CallbackClient 负责
+        callbackClient.sendCallback(taskId, req.callbackUrl(), payload);
+        logger.info("🔓 [API] 任务 [{}] 结束", taskId);
+    }
 
+    private static void onCallbackSettled(String taskId, int httpCode) {
+        journal(j -> j.recordSettled(taskId, httpCode));
+    }
+
+    /**
+     * 日志写入与检查点都在 journalExecutor 上顺序执行：IO 线程 / 检测线程只提交任务，不会等待日志锁或刷盘
+     */
+    private static void journal(Consumer<OrderJournal> write) {
+        OrderJournal j = journal;
+        if (j == null) return;
+        try {
+            journalExecutor.execute(() -> write.accept(j));
+        } catch (RejectedExecutionException e) {
+            // 关闭过程中：直接写入
+            write.accept(j);
+        }
+    }
+
+    /**
+     * 打开订单日志并回放：恢复待支付订单、重新投递未送达的回调
+     */
+    private static void recoverFromJournal() {
+        String dir = AppConfig.get("journal.dir");
+        if (dir == null || dir.isBlank()) {
+            logger.warn("⚠️ 未配置 journal.dir，订单日志已关闭，重启将丢失进行中的订单");
+            return;
+        }
+
+        OrderJournal.Recovery recovery;
+        try {
+            journal = OrderJournal.open(Paths.get(dir), AppConfig.getInt("journal.size.kb", 1024) * 1024);
+            recovery = journal.replay();
         } catch (Exception e) {
-            logger.error("💥 [API] 任务执行崩溃", e);
-            isPending.set(false);
+            logger.error("❌ 订单日志打开失败，本次运行不记录日志", e);
+            journal = null;
+            return;
+        }
+        logger.info("📒 订单日志回放 {} 条记录，耗时 {}ms | 恢复订单 {} 个，未送达回调 {} 个",
+                recovery.records(), recovery.costMs(), recovery.orders().size(), recovery.callbacks().size());
+
+        for (OrderBook.Order order : recovery.orders()) {
+            if (orderBook.admit(order) == null) monitorService.onOrderAdmitted(order.taskId());
         }
+        for (OrderJournal.PendingCallback callback : recovery.callbacks()) {
+            statusBoard.publish(callback.payload());
+            eventStream.publish(callback.payload());
+            callbackClient.sendCallback(callback.taskId(), callback.callbackUrl(), callback.payload());
+        }
+        if (!orderBook.isEmpty()) startWatcherIfIdle();
+
+        long interval = AppConfig.getInt("journal.checkpoint.interval.ms", 5000);
+        journalExecutor.scheduleWithFixedDelay(journal::checkpoint, interval, interval, TimeUnit.MILLISECONDS);
     }
 
-    private static void sendJson(HttpServerExchange exchange, int statusCode, Object responseObj) {
-        exchange.setStatusCode(statusCode);
-        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
-        exchange.getResponseSender().send(gson.toJson(responseObj));
+    /**
+     * 直接从字节流绑定请求对象，不经过中间 String
+     */
+    private static DTOs.PaymentRequest parsePaymentRequest(byte[] body) throws IOException {
+        if (body.length == 0) return null;
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+        reader.setLenient(true); // 与 Gson.fromJson 的解析宽松度保持一致
+        return PAYMENT_REQUEST_ADAPTER.read(reader);
     }
 
-    private static SSLContext createSSLContext(Path keyPath, Path certPath) throws Exception {
-        PrivateKey privateKey = null;
-        try (InputStream is = Files.newInputStream(keyPath);
-             InputStreamReader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
-             PEMParser pemParser = new PEMParser(reader)) {
-            Object object = pemParser.readObject();
-            JcaPEMKeyConverter converter = new JcaPEMKeyConverter().setProvider("BC");
-            if (object instanceof PEMKeyPair) {
-                privateKey = converter.getPrivateKey(((PEMKeyPair) object).getPrivateKeyInfo());
-            } else if (object instanceof PrivateKeyInfo) {
-                privateKey = converter.getPrivateKey((PrivateKeyInfo) object);
-            }
+    /**
+     * PENDING 响应只随等待秒数变化，按秒数缓存编码结果
+     */
+    private static ByteBuffer pendingResponse(int waitSec) {
+        if (waitSec >= RESP_PENDING.length()) {
+            return encode(new DTOs.BaseResponse("PENDING", "System Busy", new DTOs.PendingData(waitSec)));
         }
-        List<Certificate> certChain = new ArrayList<>();
-        try (InputStream is = Files.newInputStream(certPath);
-             InputStreamReader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
-             PEMParser pemParser = new PEMParser(reader)) {
-            Object object;
-            JcaX509CertificateConverter converter = new JcaX509CertificateConverter().setProvider("BC");
-            while ((object = pemParser.readObject()) != null) {
-                if (object instanceof X509CertificateHolder) {
-                    certChain.add(converter.getCertificate((X509CertificateHolder) object));
-                }
-            }
+        ByteBuffer cached = RESP_PENDING.get(waitSec);
+        if (cached == null) {
+            cached = encode(new DTOs.BaseResponse("PENDING", "System Busy", new DTOs.PendingData(waitSec)));
+            RESP_PENDING.set(waitSec, cached);
         }
-        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
-        keyStore.load(null, null);
-        keyStore.setKeyEntry("alias", privateKey, null, certChain.toArray(new Certificate[0]));
-        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-        kmf.init(keyStore, null);
-        SSLContext context = SSLContext.getInstance("TLS");
-        context.init(kmf.getKeyManagers(), null, null);
-        return context;
+        return cached;
     }
 
     /**
-     * 内部类：安全延迟处理器
-     * 在处理实际业务前，强制休眠 200ms 以过滤快速扫描探测
+     * 预编码为只读直接缓冲区，发送时只复制一个视图
      */
-    private record SecurityDelayHandler(HttpHandler next) implements HttpHandler {
+    private static ByteBuffer encode(DTOs.BaseResponse response) {
+        byte[] bytes = gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+    }
+
+    private static void sendJson(HttpServerExchange exchange, int statusCode, ByteBuffer body) {
+        exchange.setStatusCode(statusCode);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseSender().send(body.duplicate());
+    }
+
+    private static void sendJson(HttpServerExchange exchange, int statusCode, Object responseObj) {
+        exchange.setStatusCode(statusCode);
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseSender().send(gson.toJson(responseObj));
+    }
+
+    /**
+     * 安全前置处理器 (全部在 IO 线程上完成，不占用 Worker 线程)
+     * 1. 按来源 IP 与接口分组限流，超限直接返回 429 (limiterFor 返回 null 的接口不限流)
+     * 2. 200ms 反扫描延迟：挂到 IO 线程的定时器上，到期后在同一 IO 线程上继续执行业务处理器
+     */
+    private record SecurityDelayHandler(HttpHandler next, Function<HttpServerExchange, RateLimiter> limiterFor)
+            implements HttpHandler {
+        private static final long DELAY_MS = 200;
 
         @Override
-        public void handleRequest(HttpServerExchange exchange) throws Exception {
-            // 在分发到业务逻辑之前进行延迟
-            // 如果是 IO 线程，必须先 dispatch 才能 sleep，否则会阻塞 IO 循环
-            if (exchange.isInIoThread()) {
-                exchange.dispatch(this);
+        public void handleRequest(HttpServerExchange exchange) {
+            InetAddress ip = exchange.getSourceAddress().getAddress();
+            RateLimiter limiter = limiterFor.apply(exchange);
+            if (limiter != null && !limiter.tryAcquire(ip)) {
+                exchange.setStatusCode(StatusCodes.TOO_MANY_REQUESTS);
+                exchange.getResponseHeaders().put(Headers.RETRY_AFTER, limiter.retryAfterSeconds(ip));
+                exchange.endExchange();
                 return;
             }
 
-            try {
-                Thread.sleep(200);
-            } catch (InterruptedException ignored) {
-                Thread.currentThread().interrupt();
-            }
-
-            next.handleRequest(exchange);
+            // SameThreadExecutor 只标记交换为已分发 (不会在返回时结束)，延迟到期后由定时器继续
+            exchange.dispatch(SameThreadExecutor.INSTANCE, () ->
+                    exchange.getIoThread().executeAfter(() -> exchange.dispatch(exchange.getIoThread(), next), DELAY_MS, TimeUnit.MILLISECONDS));
         }
     }
-}
\ No newline at end of file
+}
@@ -2,75 +2,412 @@ package fun.ceroxe.wcpw;
 
 import com.google.gson.Gson;
 import okhttp3.*;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * 回调投递引擎
+ * 基于 OkHttp 异步调用，并发受 Dispatcher 限制 (全局 / 单个目标主机)，慢速或不可达的 NAS 不会堆积线程。
+ * 失败按 callback.retry.count / callback.retry.interval.ms 指数退避 + 抖动重试；
+ * 重试耗尽的回调进入待投递队列，按 callback.redeliver.interval.ms 周期重新投递，已确认的支付不会丢失。
+ * <p>
+ * 每个 NAS 主机使用独立的连接池 (callback.pool.*)，HTTPS 经 ALPN 自动协商 HTTP/2，一条连接上多路复用；
+ * callback.h2c.hosts 中的主机以明文 HTTP/2 (prior knowledge) 连接。
+ * callback.batch.window.ms > 0 时开启批量模式：同一主机在窗口内的回调合并为一个签名请求发往 callback.batch.path，
+ * NAS 不支持 (404 / 405) 或批量请求失败时退回逐笔投递。
+ */
 public class CallbackClient {
     private static final Logger logger = LoggerFactory.getLogger(CallbackClient.class);
     private static final Gson gson = new Gson();
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private static final Metrics.Histogram HTTP_LATENCY =
+            Metrics.histogram("wcpw_callback_http_seconds", "Callback HTTP round trip per attempt");
+    private static final Metrics.Histogram DELIVERY_LATENCY =
+            Metrics.histogram("wcpw_detection_to_callback_seconds", "Payment detection to confirmed callback delivery");
+    private static final Metrics.Counter DELIVERED = outcome("delivered");
+    private static final Metrics.Counter REJECTED = outcome("rejected");
+    private static final Metrics.Counter RETRIED = outcome("retried");
+    private static final Metrics.Counter PARKED = outcome("parked");
+    private static final Metrics.Counter BATCHES =
+            Metrics.counter("wcpw_callback_batches_total", "Batched callback requests sent", "");
+    private static final Metrics.Counter BATCHED =
+            Metrics.counter("wcpw_callback_batched_total", "Callbacks carried by batched requests", "");
+
     private final OkHttpClient client;
-    private final String callbackSecret;
+    private final DeliveryListener listener;
+    private final ScheduledExecutorService retryScheduler;
+    private final ConcurrentLinkedDeque<Delivery> undelivered = new ConcurrentLinkedDeque<>();
+
+    // 按 scheme://host:port 区分的客户端：共享 Dispatcher (并发上限不变)，连接池各自独立
+    private final Map<String, OkHttpClient> hostClients = new ConcurrentHashMap<>();
+    private final int poolIdlePerHost;
+    private final long poolKeepAliveSeconds;
+    private final Set<String> h2cHosts;
+
+    private final long batchWindowMs;
+    private final String batchPath;
+    private final int batchMax;
+    private final Map<String, List<Delivery>> pendingBatches = new HashMap<>();
+
+    /**
+     * 一次回调投递，签名在创建时确定，重试时复用同一个请求
+     */
+    private record Delivery(String taskId, Request request, DTOs.CallbackPayload payload) {
+    }
+
+    /**
+     * 回调有了最终结果：送达 (2xx) 或被 NAS 明确拒绝 (4xx)
+     */
+    public interface DeliveryListener {
+        void onSettled(String taskId, int httpCode);
+    }
+
+    public CallbackClient(DeliveryListener listener) {
+        this.listener = listener;
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(AppConfig.getInt("callback.max.concurrent", 32));
+        dispatcher.setMaxRequestsPerHost(AppConfig.getInt("callback.max.per.host", 4));
 
-    public CallbackClient() {
-        this.callbackSecret = AppConfig.get("callback.secret");
         this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
                 .connectTimeout(5, TimeUnit.SECONDS)
+                .readTimeout(10, TimeUnit.SECONDS)
+                .callTimeout(15, TimeUnit.SECONDS)
                 .build();
-    }
+        this.poolIdlePerHost = AppConfig.getInt("callback.pool.idle.per.host", 4);
+        this.poolKeepAliveSeconds = AppConfig.getInt("callback.pool.keepalive.seconds", 300);
+        this.h2cHosts = hostList(AppConfig.get("callback.h2c.hosts"));
 
-    public void sendCallback(String taskId, String originalUrl, DTOs.CallbackPayload payload) {
-        try {
-            // 1. 提取 OID 和基础 URL
-            String baseUrl = originalUrl.split("\\?")[0];
+        this.batchWindowMs = AppConfig.getInt("callback.batch.window.ms", 0);
+        String path = AppConfig.get("callback.batch.path");
+        this.batchPath = path == null || path.isBlank() ? "/callback/batch" : path.trim();
+        this.batchMax = Math.max(2, AppConfig.getInt("callback.batch.max", 50));
 
-            // 2. 准备签名参数 (必须与 NAS 端的验签算法完全一致)
-            Map<String, String> params = new TreeMap<>();
-            params.put("oid", payload.oid());
-            params.put("money", String.format("%.2f", payload.amount()));
-            params.put("status", payload.status());
-            params.put("timestamp", String.valueOf(payload.detectTimestamp()));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "wcpw-callback-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        long redeliverMs = AppConfig.getInt("callback.redeliver.interval.ms", 60000);
+        retryScheduler.scheduleWithFixedDelay(this::redeliverParked, redeliverMs, redeliverMs, TimeUnit.MILLISECONDS);
+        Metrics.gauge("wcpw_callbacks_undelivered", "Callbacks parked after exhausting retries", undelivered::size);
+    }
 
-            // 3. 计算签名
-            StringBuilder sb = new StringBuilder();
-            for (Map.Entry<String, String> entry : params.entrySet()) {
-                sb.append(entry.getKey()).append("=").append(entry.getValue()).append("&");
-            }
-            sb.append("key=").append(callbackSecret);
-            String sign = md5(sb.toString()).toUpperCase();
+    private static Metrics.Counter outcome(String result) {
+        return Metrics.counter("wcpw_callbacks_total", "Callback attempts by outcome", "result=\"" + result + "\"");
+    }
 
-            // 4. 构造最终带参数的 URL
-            String finalUrl = baseUrl + "?oid=" + payload.oid() +
-                    "&money=" + params.get("money") +
-                    "&status=" + params.get("status") +
-                    "&timestamp=" + params.get("timestamp") +
-                    "&sign=" + sign;
+    private static Set<String> hostList(String value) {
+        Set<String> hosts = ConcurrentHashMap.newKeySet();
+        if (value == null) return hosts;
+        for (String host : value.split(",")) {
+            if (!host.isBlank()) hosts.add(host.trim().toLowerCase());
+        }
+        return hosts;
+    }
 
+    /**
+     * 异步投递回调，立即返回
+     */
+    public void sendCallback(String taskId, String originalUrl, DTOs.CallbackPayload payload) {
+        try {
+            String finalUrl = buildSignedUrl(originalUrl, payload);
             logger.info("[{}] 📤 发起回调 -> {}", taskId, finalUrl);
 
             Request request = new Request.Builder()
                     .url(finalUrl)
-                    .post(RequestBody.create(gson.toJson(payload), MediaType.get("application/json")))
+                    .post(RequestBody.create(gson.toJson(payload), JSON))
                     .build();
+            Delivery delivery = new Delivery(taskId, request, payload);
+            if (batchWindowMs > 0) {
+                enqueueBatch(delivery);
+            } else {
+                attempt(delivery, 0);
+            }
+        } catch (Exception e) {
+            logger.error("[{}] 💥 回调构造失败", taskId, e);
+        }
+    }
+
+    /**
+     * 待投递 (重试耗尽) 的回调数
+     */
+    public int undeliveredCount() {
+        return undelivered.size();
+    }
+
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        synchronized (pendingBatches) {
+            for (List<Delivery> batch : pendingBatches.values()) undelivered.addAll(batch);
+            pendingBatches.clear();
+        }
+        client.dispatcher().executorService().shutdown();
+        for (OkHttpClient hostClient : hostClients.values()) hostClient.connectionPool().evictAll();
+        if (!undelivered.isEmpty()) {
+            logger.warn("⚠️ 关闭时仍有 {} 个回调未送达", undelivered.size());
+        }
+    }
+
+    String buildSignedUrl(String originalUrl, DTOs.CallbackPayload payload) {
+        // 1. 提取 OID 和基础 URL
+        String baseUrl = originalUrl.split("\\?")[0];
+
+        // 2. 准备签名参数并计算签名
+        Map<String, String> params = callbackParams(payload);
+        String sign = sign(params);
+
+        // 3. 构造最终带参数的 URL
+        return baseUrl + "?oid=" + payload.oid() +
+                "&money=" + params.get("money") +
+                "&status=" + params.get("status") +
+                "&timestamp=" + params.get("timestamp") +
+                "&sign=" + sign;
+    }
+
+    /**
+     * 参与签名的回调参数 (按 Key 字典序)，回调 URL 与推送事件共用
+     */
+    static Map<String, String> callbackParams(DTOs.CallbackPayload payload) {
+        Map<String, String> params = new TreeMap<>();
+        params.put("oid", payload.oid());
+        params.put("money", String.format("%.2f", payload.amount()));
+        params.put("status", payload.status());
+        params.put("timestamp", String.valueOf(payload.detectTimestamp()));
+        return params;
+    }
+
+    /**
+     * 按字典序拼接参数与回调密钥后取 MD5 (大写)，必须与 NAS 端的验签算法完全一致
+     */
+    static String sign(Map<String, String> sortedParams) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : sortedParams.entrySet()) {
+            sb.append(entry.getKey()).append("=").append(entry.getValue()).append("&");
+        }
+        sb.append("key=").append(AppConfig.current().callbackSecret());
+        return md5(sb.toString()).toUpperCase();
+    }
+
+    private void attempt(Delivery delivery, int attempt) {
+        long startedAt = System.nanoTime();
+        clientFor(delivery.request().url()).newCall(delivery.request()).enqueue(new Callback() {
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                HTTP_LATENCY.observeNanos(System.nanoTime() - startedAt);
+                try (response) {
+                    if (response.isSuccessful()) {
+                        logger.info("[{}] ✅ 回调成功: HTTP {} ({})", delivery.taskId(), response.code(), response.protocol());
+                        delivered(delivery, response.code());
+                        return;
+                    }
+                    String body = response.body() != null ? response.body().string() : "";
+                    int code = response.code();
+                    if (code >= 500 || code == 408 || code == 429) {
+                        retryLater(delivery, attempt, "HTTP " + code);
+                    } else {
+                        // 4xx 为 NAS 明确拒绝 (如验签失败)，重试无意义
+                        logger.error("[{}] ❌ 回调被 NAS 拒绝: HTTP {} | Body: {}", delivery.taskId(), code, body);
+                        REJECTED.inc();
+                        listener.onSettled(delivery.taskId(), code);
+                    }
+                } catch (IOException e) {
+                    retryLater(delivery, attempt, e.getMessage());
+                }
+            }
+
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                HTTP_LATENCY.observeNanos(System.nanoTime() - startedAt);
+                retryLater(delivery, attempt, e.getMessage());
+            }
+        });
+    }
+
+    private void delivered(Delivery delivery, int code) {
+        DELIVERED.inc();
+        DELIVERY_LATENCY.observeMillis(System.currentTimeMillis() - delivery.payload().detectTimestamp());
+        listener.onSettled(delivery.taskId(), code);
+    }
+
+    /**
+     * 目标主机的客户端，首次使用时创建
+     * OkHttp 默认所有主机共用一个只保留 5 条空闲连接的池，回调目标较多时连接互相挤出、反复握手；
+     * 这里每个主机独立保留 callback.pool.idle.per.host 条空闲连接。HTTP/2 连接上的请求多路复用，通常一条即可。
+     */
+    private OkHttpClient clientFor(HttpUrl url) {
+        return hostClients.computeIfAbsent(hostKey(url), key -> {
+            OkHttpClient.Builder builder = client.newBuilder()
+                    .connectionPool(new ConnectionPool(poolIdlePerHost, poolKeepAliveSeconds, TimeUnit.SECONDS));
+            if (!url.isHttps() && h2cHosts.contains(url.host() + ":" + url.port())) {
+                builder.protocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE));
+            }
+            return builder.build();
+        });
+    }
 
-            try (Response response = client.newCall(request).execute()) {
-                if (response.isSuccessful()) {
-                    logger.info("[{}] ✅ 回调成功: HTTP {}", taskId, response.code());
-                } else {
-                    logger.error("[{}] ❌ 回调被 NAS 拒绝: HTTP {} | Body: {}", taskId, response.code(), response.body().string());
+    private static String hostKey(HttpUrl url) {
+        return url.scheme() + "://" + url.host() + ":" + url.port();
+    }
+
+    /**
+     * 放入目标主机的待合并批次：批次的第一笔回调启动 callback.batch.window.ms 计时，到时或攒满 callback.batch.max 笔时发出
+     */
+    private void enqueueBatch(Delivery delivery) {
+        String key = hostKey(delivery.request().url());
+        List<Delivery> full = null;
+        synchronized (pendingBatches) {
+            List<Delivery> batch = pendingBatches.get(key);
+            if (batch == null) {
+                try {
+                    retryScheduler.schedule(() -> flushBatch(key), batchWindowMs, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    // 已关闭：与重试一样转入待投递队列
+                    undelivered.add(delivery);
+                    return;
                 }
+                batch = new ArrayList<>();
+                pendingBatches.put(key, batch);
             }
+            batch.add(delivery);
+            if (batch.size() >= batchMax) full = pendingBatches.remove(key);
+        }
+        if (full != null) sendBatch(key, full);
+    }
+
+    private void flushBatch(String key) {
+        List<Delivery> batch;
+        synchronized (pendingBatches) {
+            batch = pendingBatches.remove(key);
+        }
+        if (batch != null) sendBatch(key, batch);
+    }
+
+    /**
+     * 发送合并后的回调：Body 为逐笔签名的 PaymentEvent 列表，URL 参数 count / digest (Body 的 MD5) / timestamp 另行签名
+     * 2xx 视为整批送达；404 / 405 / 501 (NAS 未实现批量接口) 与网络错误、5xx / 408 / 429 均退回逐笔投递，
+     * 逐笔投递沿用单笔回调的重试与待投递队列；其他 4xx 视为整批被拒绝。
+     */
+    private void sendBatch(String key, List<Delivery> batch) {
+        if (batch.size() == 1) {
+            attempt(batch.get(0), 0);
+            return;
+        }
+        List<DTOs.PaymentEvent> items = new ArrayList<>(batch.size());
+        for (Delivery delivery : batch) {
+            Map<String, String> params = callbackParams(delivery.payload());
+            items.add(new DTOs.PaymentEvent(params.get("oid"), params.get("money"), params.get("status"),
+                    params.get("timestamp"), sign(params)));
+        }
+        String body = gson.toJson(new DTOs.CallbackBatch(items));
+
+        Map<String, String> params = new TreeMap<>();
+        params.put("count", String.valueOf(items.size()));
+        params.put("digest", md5(body).toUpperCase());
+        params.put("timestamp", String.valueOf(System.currentTimeMillis()));
+        HttpUrl.Builder url = HttpUrl.get(key + batchPath).newBuilder();
+        params.forEach(url::addQueryParameter);
+        url.addQueryParameter("sign", sign(params));
+        Request request = new Request.Builder().url(url.build()).post(RequestBody.create(body, JSON)).build();
+
+        BATCHES.inc();
+        BATCHED.add(items.size());
+        logger.info("📦 批量回调 {} 笔 -> {}", items.size(), request.url());
+        long startedAt = System.nanoTime();
+        clientFor(request.url()).newCall(request).enqueue(new Callback() {
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                HTTP_LATENCY.observeNanos(System.nanoTime() - startedAt);
+                try (response) {
+                    int code = response.code();
+                    if (response.isSuccessful()) {
+                        logger.info("✅ 批量回调成功 {} 笔: HTTP {} ({})", batch.size(), code, response.protocol());
+                        for (Delivery delivery : batch) delivered(delivery, code);
+                    } else if (code == 404 || code == 405 || code == 501 || code >= 500 || code == 408 || code == 429) {
+                        logger.warn("⚠️ 批量回调失败: HTTP {}，{} 笔改为逐笔投递", code, batch.size());
+                        for (Delivery delivery : batch) attempt(delivery, 0);
+                    } else {
+                        String text = response.body() != null ? response.body().string() : "";
+                        logger.error("❌ 批量回调被 NAS 拒绝: HTTP {} | Body: {}", code, text);
+                        for (Delivery delivery : batch) {
+                            REJECTED.inc();
+                            listener.onSettled(delivery.taskId(), code);
+                        }
+                    }
+                } catch (IOException e) {
+                    fallBack(e);
+                }
+            }
+
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                HTTP_LATENCY.observeNanos(System.nanoTime() - startedAt);
+                fallBack(e);
+            }
+
+            private void fallBack(IOException e) {
+                logger.warn("⚠️ 批量回调失败 ({})，{} 笔改为逐笔投递", e.getMessage(), batch.size());
+                for (Delivery delivery : batch) attempt(delivery, 0);
+            }
+        });
+    }
+
+    private void retryLater(Delivery delivery, int attempt, String reason) {
+        if (attempt >= AppConfig.current().callbackRetryCount()) {
+            logger.error("[{}] 💥 回调失败 {} 次 ({})，转入待投递队列", delivery.taskId(), attempt + 1, reason);
+            PARKED.inc();
+            undelivered.add(delivery);
+            return;
+        }
+        long delay = backoffDelay(attempt);
+        RETRIED.inc();
+        logger.warn("[{}] 🔁 回调失败 ({})，{}ms 后第 {} 次重试", delivery.taskId(), reason, delay, attempt + 1);
+        try {
+            retryScheduler.schedule(() -> attempt(delivery, attempt + 1), delay, TimeUnit.MILLISECONDS);
         } catch (Exception e) {
-            logger.error("[{}] 💥 回调过程发生异常", taskId, e);
+            undelivered.add(delivery);
         }
     }
 
-    private String md5(String s) {
+    /**
+     * 指数退避 + ±25% 抖动，避免大量回调同时重试
+     */
+    private long backoffDelay(int attempt) {
+        long base = AppConfig.current().callbackRetryIntervalMs() << Math.min(attempt, 10);
+        double jitter = 0.75 + ThreadLocalRandom.current().nextDouble() * 0.5;
+        return (long) (base * jitter);
+    }
+
+    private void redeliverParked() {
+        List<Delivery> batch = new ArrayList<>();
+        Delivery delivery;
+        while ((delivery = undelivered.poll()) != null) batch.add(delivery);
+        if (batch.isEmpty()) return;
+
+        logger.info("🔁 重新投递 {} 个未送达的回调", batch.size());
+        for (Delivery d : batch) attempt(d, 0);
+    }
+
+    private static String md5(String s) {
         try {
             MessageDigest md = MessageDigest.getInstance("MD5");
             byte[] array = md.digest(s.getBytes(StandardCharsets.UTF_8));
@@ -83,4 +420,4 @@ public class CallbackClient {
             return "";
         }
     }
-}
\ No newline at end of file
+}
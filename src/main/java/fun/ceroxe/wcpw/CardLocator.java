@@ -0,0 +1,98 @@
+package fun.ceroxe.wcpw;
+
+import com.benjaminwan.ocrlibrary.Point;
+import com.benjaminwan.ocrlibrary.TextBlock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * 收款卡片定位器
+ * 利用整幅 ROI 的 OCR 文字框做版式推断：以 "第N笔" 所在文字框为锚点，
+ * 合并其上下一张卡片高度范围内的金额 / 收款文字框，外扩边距后缓存为卡片区域 (屏幕坐标)。
+ * 之后的扫描只截取并识别卡片区域，卡片丢失或移动时失效，回到整幅 ROI 重新定位。
+ */
+public class CardLocator {
+    private static final Logger logger = LoggerFactory.getLogger(CardLocator.class);
+
+    // 卡片内文字距锚点的最大纵向距离，以及卡片区域外扩边距
+    private static final int CARD_MAX_SPAN = 240;
+    private static final int MARGIN = 24;
+    // 卡片面积超过 ROI 的该比例时没有裁剪收益，不缓存
+    private static final double MAX_AREA_RATIO = 0.8;
+
+    private volatile Rectangle cached;
+
+    /**
+     * 已缓存的卡片区域 (屏幕坐标)，未定位时为 null
+     */
+    public Rectangle cachedRegion() {
+        return cached;
+    }
+
+    /**
+     * 根据整幅 ROI 的识别结果定位卡片
+     *
+     * @param blocks  OCR 文字框 (坐标相对于 captureArea)
+     * @param roiArea 本次截图在屏幕上的位置
+     * @return 是否定位成功
+     */
+    public boolean learn(List<TextBlock> blocks, Rectangle roiArea) {
+        Rectangle anchor = null;
+        for (TextBlock block : blocks) {
+            if (isSerialText(block.getText())) {
+                anchor = bounds(block);
+                break;
+            }
+        }
+        if (anchor == null) return false;
+
+        Rectangle card = new Rectangle(anchor);
+        double anchorCenter = anchor.getCenterY();
+        for (TextBlock block : blocks) {
+            String text = block.getText();
+            if (!text.contains("收款") && !text.contains("￥") && !text.contains("¥")) continue;
+            Rectangle box = bounds(block);
+            if (Math.abs(box.getCenterY() - anchorCenter) <= CARD_MAX_SPAN) card.add(box);
+        }
+
+        card.grow(MARGIN, MARGIN);
+        card = card.intersection(new Rectangle(0, 0, roiArea.width, roiArea.height));
+        if (card.isEmpty() || (double) card.width * card.height > MAX_AREA_RATIO * roiArea.width * roiArea.height) {
+            return false;
+        }
+
+        card.translate(roiArea.x, roiArea.y);
+        if (!card.equals(cached)) {
+            logger.info("🧭 定位到收款卡片: {},{} {}x{}", card.x, card.y, card.width, card.height);
+            cached = card;
+        }
+        return true;
+    }
+
+    public void invalidate(String reason) {
+        if (cached != null) {
+            logger.info("🧭 卡片区域失效 ({})，恢复整幅 ROI", reason);
+            cached = null;
+        }
+    }
+
+    private static boolean isSerialText(String text) {
+        int start = text.indexOf('第');
+        return start >= 0 && text.indexOf('笔', start) > start;
+    }
+
+    private static Rectangle bounds(TextBlock block) {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (Point p : block.getBoxPoint()) {
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+        }
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+}
@@ -1,5 +1,7 @@
 package fun.ceroxe.wcpw;
 
+import java.util.List;
+
 public class DTOs {
     public record PaymentRequest(
             String token,
@@ -25,4 +27,18 @@ public class DTOs {
             String message
     ) {
     }
-}
\ No newline at end of file
+
+    // 推送事件：字段与签名同回调 URL 参数，业务系统可复用同一套验签代码
+    public record PaymentEvent(
+            String oid,
+            String money,
+            String status,
+            String timestamp,
+            String sign
+    ) {
+    }
+
+    // 批量回调 Body：每笔结果独立签名，与单笔回调 / 推送事件的验签方式相同
+    public record CallbackBatch(List<PaymentEvent> items) {
+    }
+}
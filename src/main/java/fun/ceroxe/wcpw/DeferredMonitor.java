@@ -0,0 +1,66 @@
+package fun.ceroxe.wcpw;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 后台初始化中的到账检测器
+ * OCR 引擎 (原生库 + 模型加载 + 预热) 在独立线程上初始化，HTTP 服务不必等它就能开始监听：
+ * 新订单在 isReady 之前由接口拒绝 (首次扫描才确定起始单号，加载期间的付款无法撮合)；
+ * 从订单日志恢复的订单照常进入订单簿，检测循环在 watch 中等到引擎就绪后再开始，期间的订单通知暂存，就绪后按顺序转交。
+ */
+final class DeferredMonitor implements PaymentMonitor, Closeable {
+    private final CompletableFuture<? extends PaymentMonitor> engine;
+    private final Queue<String> admitted = new ConcurrentLinkedQueue<>();
+
+    DeferredMonitor(CompletableFuture<? extends PaymentMonitor> engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public boolean isReady() {
+        return delegate() != null;
+    }
+
+    @Override
+    public void onOrderAdmitted(String taskId) {
+        PaymentMonitor monitor = delegate();
+        if (monitor != null) {
+            monitor.onOrderAdmitted(taskId);
+            return;
+        }
+        admitted.add(taskId);
+        // 入队与引擎就绪之间的竞态：就绪后复查一次，避免通知滞留在队列中
+        monitor = delegate();
+        if (monitor != null) forward(monitor);
+    }
+
+    /**
+     * 阻塞到引擎就绪后开始检测；初始化失败时抛出 CompletionException
+     */
+    @Override
+    public void watch(OrderBook book, ResultListener listener) {
+        PaymentMonitor monitor = engine.join();
+        forward(monitor);
+        monitor.watch(book, listener);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate() instanceof Closeable closeable) closeable.close();
+    }
+
+    private PaymentMonitor delegate() {
+        return engine.isDone() && !engine.isCompletedExceptionally() ? engine.join() : null;
+    }
+
+    private void forward(PaymentMonitor monitor) {
+        String taskId;
+        while ((taskId = admitted.poll()) != null) {
+            monitor.onOrderAdmitted(taskId);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package fun.ceroxe.wcpw;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * 分块脏区域跟踪器
+ * 把画面切成 tileSize x tileSize 的网格，逐块计算像素哈希，与参考帧比较得出变化块的包围盒，
+ * 让 OCR 只处理真正变化的区域。与 MotionDetector 一样使用双缓冲交换，稳态零分配。
+ * 非线程安全，由监控循环独占。
+ */
+public class DirtyRegionTracker {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int tileSize;
+
+    private long[] reference = new long[0];
+    private long[] current = new long[0];
+    private int[] rowPixels = new int[0];
+    private int refWidth = -1;
+    private int refHeight = -1;
+    private int curWidth = -1;
+    private int curHeight = -1;
+
+    public DirtyRegionTracker(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * 计算当前帧的分块哈希并与参考帧比较 (不修改参考帧)
+     *
+     * @return 变化块的包围盒 (帧内像素坐标)；无参考帧或尺寸变化时为整帧；无变化时为 null
+     */
+    public Rectangle diff(BufferedImage frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int cols = (width + tileSize - 1) / tileSize;
+        int rows = (height + tileSize - 1) / tileSize;
+        if (current.length < cols * rows) current = new long[cols * rows];
+        curWidth = width;
+        curHeight = height;
+
+        hashTiles(frame, cols);
+
+        if (width != refWidth || height != refHeight) return new Rectangle(0, 0, width, height);
+
+        int minCol = cols, minRow = rows, maxCol = -1, maxRow = -1;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int i = row * cols + col;
+                if (current[i] != reference[i]) {
+                    if (col < minCol) minCol = col;
+                    if (col > maxCol) maxCol = col;
+                    if (row < minRow) minRow = row;
+                    if (row > maxRow) maxRow = row;
+                }
+            }
+        }
+        if (maxCol < 0) return null;
+
+        int x = minCol * tileSize;
+        int y = minRow * tileSize;
+        return new Rectangle(x, y,
+                Math.min(width, (maxCol + 1) * tileSize) - x,
+                Math.min(height, (maxRow + 1) * tileSize) - y);
+    }
+
+    /**
+     * 把最近一次 diff 的帧设为参考帧 (交换缓冲，无拷贝)
+     */
+    public void acceptCurrent() {
+        long[] tmp = reference;
+        reference = current;
+        current = tmp;
+        refWidth = curWidth;
+        refHeight = curHeight;
+    }
+
+    public void reset() {
+        refWidth = -1;
+        refHeight = -1;
+    }
+
+    public int tileSize() {
+        return tileSize;
+    }
+
+    private void hashTiles(BufferedImage frame, int cols) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        long[] hashes = current;
+        FramePixels pixels = FramePixels.of(frame);
+        if (pixels == null && rowPixels.length < width) rowPixels = new int[width];
+
+        for (int y = 0; y < height; y++) {
+            int rowBase = (y / tileSize) * cols;
+            if (y % tileSize == 0) {
+                for (int col = 0; col < cols; col++) hashes[rowBase + col] = FNV_OFFSET;
+            }
+
+            int[] src;
+            int base;
+            int alpha;
+            if (pixels != null) {
+                src = pixels.data();
+                base = pixels.offset() + y * pixels.stride();
+                alpha = pixels.alpha();
+            } else {
+                src = rowPixels;
+                base = 0;
+                alpha = 0;
+                frame.getRGB(0, y, width, 1, rowPixels, 0, width);
+            }
+
+            // 每个 tile 在本行的一段像素顺序折入该 tile 的哈希
+            for (int col = 0, x = 0; col < cols; col++) {
+                long h = hashes[rowBase + col];
+                int end = Math.min(width, x + tileSize);
+                for (; x < end; x++) {
+                    h = (h ^ (src[base + x] | alpha)) * FNV_PRIME;
+                }
+                hashes[rowBase + col] = h;
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package fun.ceroxe.wcpw;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * 截图像素的直接访问视图
+ * Robot 截图为 TYPE_INT_RGB，直接读 DataBufferInt 可绕开 getRGB 的逐像素 ColorModel 转换
+ *
+ * @param data   底层像素数组 (0x00RRGGBB / 0xAARRGGBB)
+ * @param offset 坐标 (0,0) 在数组中的下标
+ * @param stride 行跨度
+ * @param alpha  INT_RGB 无透明通道，按 getRGB 语义补全为不透明 (0xFF000000)，保证与 getRGB 取值一致
+ */
+record FramePixels(int[] data, int offset, int stride, int width, int height, int alpha) {
+
+    /**
+     * 无法直接访问 (非 INT_RGB/INT_ARGB 布局) 时返回 null，调用方应退回 getRGB
+     */
+    static FramePixels of(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) return null;
+
+        WritableRaster raster = image.getRaster();
+        if (!(raster.getDataBuffer() instanceof DataBufferInt buffer)) return null;
+        if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel)) return null;
+
+        int offset = buffer.getOffset()
+                - raster.getSampleModelTranslateY() * sampleModel.getScanlineStride()
+                - raster.getSampleModelTranslateX();
+        int alpha = type == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+        return new FramePixels(buffer.getData(), offset, sampleModel.getScanlineStride(),
+                image.getWidth(), image.getHeight(), alpha);
+    }
+}
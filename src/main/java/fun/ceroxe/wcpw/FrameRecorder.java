@@ -0,0 +1,141 @@
+package fun.ceroxe.wcpw;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * 截图录制器：包装另一个截图来源，把每次截到的画面连同时间戳与屏幕位置追加到录制文件，供 {@link ReplayFrameSource} 回放
+ * <p>文件格式 (大端)：
+ * <pre>
+ * 文件头: [int magic][int version][int 屏幕宽][int 屏幕高]
+ * 帧记录: [long 截图时间 ms][int x][int y][int w][int h][int 压缩长度][Deflate(RGB 逐像素 3 字节)]
+ * </pre>
+ * 聊天窗口画面大面积纯色，Deflate (最快档) 通常能压到原始大小的几十分之一。
+ * 每帧写完即 flush，进程异常退出最多丢失最后一帧；写入失败时停止录制，不影响截图。
+ */
+public class FrameRecorder implements FrameSource {
+    private static final Logger logger = LoggerFactory.getLogger(FrameRecorder.class);
+
+    static final int MAGIC = 0x57434652; // "WCFR"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 16;
+    static final int FRAME_HEADER_SIZE = 28;
+
+    private final FrameSource delegate;
+    private final Path file;
+    private final DataOutputStream out;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] rgb = new byte[0];
+    private byte[] compressed = new byte[0];
+    private int[] row = new int[0];
+    private long frames;
+    private boolean failed;
+
+    public FrameRecorder(FrameSource delegate, Path file) throws IOException {
+        this.delegate = delegate;
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        Dimension screen = delegate.screenSize();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(screen.width);
+        out.writeInt(screen.height);
+        out.flush();
+        logger.info("⏺️ 截图录制已开启: {}", file.toAbsolutePath());
+    }
+
+    @Override
+    public Dimension screenSize() {
+        return delegate.screenSize();
+    }
+
+    @Override
+    public BufferedImage capture(Rectangle area) {
+        BufferedImage image = delegate.capture(area);
+        append(System.currentTimeMillis(), area, image);
+        return image;
+    }
+
+    /**
+     * 追加一帧 (image 的尺寸即区域尺寸，位置取 area.x / area.y)
+     */
+    synchronized void append(long timestamp, Rectangle area, BufferedImage image) {
+        if (failed) return;
+        try {
+            int length = encodeRgb(image);
+            deflater.reset();
+            deflater.setInput(rgb, 0, length);
+            deflater.finish();
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == compressed.length) compressed = Arrays.copyOf(compressed, Math.max(4096, size * 2));
+                size += deflater.deflate(compressed, size, compressed.length - size);
+            }
+
+            out.writeLong(timestamp);
+            out.writeInt(area.x);
+            out.writeInt(area.y);
+            out.writeInt(image.getWidth());
+            out.writeInt(image.getHeight());
+            out.writeInt(size);
+            out.write(compressed, 0, size);
+            out.flush();
+            frames++;
+        } catch (IOException e) {
+            failed = true;
+            logger.error("❌ 截图录制写入失败，已停止录制: {}", e.getMessage());
+        }
+    }
+
+    private int encodeRgb(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int length = width * height * 3;
+        if (rgb.length < length) rgb = new byte[length];
+
+        FramePixels pixels = FramePixels.of(image);
+        if (pixels == null && row.length < width) row = new int[width];
+        int p = 0;
+        for (int y = 0; y < height; y++) {
+            int[] data;
+            int base;
+            if (pixels != null) {
+                data = pixels.data();
+                base = pixels.offset() + y * pixels.stride();
+            } else {
+                data = image.getRGB(0, y, width, 1, row, 0, width);
+                base = 0;
+            }
+            for (int x = 0; x < width; x++) {
+                int argb = data[base + x];
+                rgb[p++] = (byte) (argb >> 16);
+                rgb[p++] = (byte) (argb >> 8);
+                rgb[p++] = (byte) argb;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            out.close();
+            deflater.end();
+            logger.info("⏹️ 截图录制结束: {} 帧 -> {}", frames, file.toAbsolutePath());
+        } finally {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package fun.ceroxe.wcpw;
+
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
+
+/**
+ * 截图来源
+ * 生产环境为 Robot 实时截屏；录制 / 回放实现让检测流水线可以脱离桌面运行，并用真实采集的画面复现问题、衡量识别性能。
+ * 实现需线程安全 (截图阶段与 OCR 阶段的复核都会截图)。
+ */
+public interface FrameSource extends AutoCloseable {
+
+    /**
+     * 屏幕尺寸，ROI 按右下角定位
+     */
+    Dimension screenSize();
+
+    /**
+     * 截取屏幕区域 (屏幕坐标)，返回 TYPE_INT_RGB 图像
+     */
+    BufferedImage capture(Rectangle area);
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * 按 capture.* 配置创建截图来源
+     * capture.source=robot (默认) | x11shm | replay；配置 capture.record.file 时额外把截到的画面录制到该文件。
+     */
+    static FrameSource fromConfig() throws Exception {
+        String type = AppConfig.get("capture.source");
+        if (type == null || type.isBlank()) type = "robot";
+
+        FrameSource source = switch (type) {
+            case "robot" -> new RobotFrameSource();
+            case "x11shm" -> loadX11Shm();
+            case "replay" -> {
+                String file = AppConfig.get("capture.replay.file");
+                if (file == null || file.isBlank()) throw new IllegalArgumentException("capture.source=replay 需要配置 capture.replay.file");
+                yield ReplayFrameSource.open(Paths.get(file), AppConfig.getDouble("capture.replay.speed", 1.0));
+            }
+            default -> throw new IllegalArgumentException("未知的 capture.source: " + type);
+        };
+
+        String record = AppConfig.get("capture.record.file");
+        if (record != null && !record.isBlank()) source = new FrameRecorder(source, Paths.get(record));
+        return source;
+    }
+
+    /**
+     * X11 共享内存截屏只在 x11-shm 构建配置下编译，且需要 --enable-preview 运行，
+     * 因此反射加载；类缺失、未开启预览、无 X 服务器或不支持 MIT-SHM 时退回 Robot
+     */
+    private static FrameSource loadX11Shm() throws AWTException {
+        try {
+            return (FrameSource) Class.forName("fun.ceroxe.wcpw.X11ShmFrameSource").getDeclaredConstructor().newInstance();
+        } catch (Throwable e) {
+            Throwable cause = e instanceof InvocationTargetException ite && ite.getCause() != null ? ite.getCause() : e;
+            LoggerFactory.getLogger(FrameSource.class).warn("⚠️ X11 共享内存截屏不可用，退回 Robot: {}", cause.toString());
+            return new RobotFrameSource();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package fun.ceroxe.wcpw;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
+
+/**
+ * 容量为 1 的阶段间队列：只保留最新的元素
+ * 消费者处理慢时生产者不阻塞，新元素覆盖未被取走的旧元素 (覆盖前交给 merger 合并，默认直接丢弃旧元素)
+ */
+public class LatestSlot<T> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final BinaryOperator<T> merger;
+
+    private T item;
+    private long dropped = 0;
+
+    public LatestSlot() {
+        this((older, newer) -> newer);
+    }
+
+    /**
+     * @param merger (未被取走的旧元素, 新元素) -> 实际保留的元素
+     */
+    public LatestSlot(BinaryOperator<T> merger) {
+        this.merger = merger;
+    }
+
+    public void offer(T newer) {
+        lock.lock();
+        try {
+            if (item != null) {
+                dropped++;
+                item = merger.apply(item, newer);
+            } else {
+                item = newer;
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取走当前元素，超时返回 null
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = unit.toNanos(timeout);
+            while (item == null) {
+                if (nanos <= 0) return null;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            T taken = item;
+            item = null;
+            return taken;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            item = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 被覆盖 (未被消费) 的元素数
+     */
+    public long dropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package fun.ceroxe.wcpw;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 运行指标注册表
+ * 计数器与直方图均基于 LongAdder，记录路径无锁、无分配；直方图使用固定桶 (秒)。
+ * render() 输出 Prometheus 文本格式，由 GET /metrics 暴露。
+ */
+public final class Metrics {
+    /**
+     * 默认耗时桶：覆盖亚毫秒级的截图 / 检测到秒级的 OCR 与回调
+     */
+    public static final double[] LATENCY_BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30
+    };
+
+    private static final Map<String, Family> families = new LinkedHashMap<>();
+
+    private Metrics() {
+    }
+
+    private sealed interface Metric permits Counter, Gauge, Histogram {
+        String labels();
+    }
+
+    private record Family(String name, String help, String type, List<Metric> metrics) {
+    }
+
+    public static final class Counter implements Metric {
+        private final String labels;
+        private final LongAdder value = new LongAdder();
+        private final LongSupplier source;
+
+        private Counter(String labels, LongSupplier source) {
+            this.labels = labels;
+            this.source = source;
+        }
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return source != null ? source.getAsLong() : value.sum();
+        }
+
+        @Override
+        public String labels() {
+            return labels;
+        }
+    }
+
+    private record Gauge(String labels, LongSupplier source) implements Metric {
+    }
+
+    public static final class Histogram implements Metric {
+        private final String labels;
+        private final long[] boundsNanos;
+        private final double[] bounds;
+        private final LongAdder[] buckets; // 最后一个为 +Inf
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram(String labels, double[] bounds) {
+            this.labels = labels;
+            this.bounds = bounds.clone();
+            this.boundsNanos = new long[bounds.length];
+            for (int i = 0; i < bounds.length; i++) boundsNanos[i] = (long) (bounds[i] * 1e9);
+            this.buckets = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void observeNanos(long nanos) {
+            int i = 0;
+            while (i < boundsNanos.length && nanos > boundsNanos[i]) i++;
+            buckets[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        public void observeMillis(long millis) {
+            observeNanos(millis * 1_000_000L);
+        }
+
+        public long count() {
+            long n = 0;
+            for (LongAdder bucket : buckets) n += bucket.sum();
+            return n;
+        }
+
+        @Override
+        public String labels() {
+            return labels;
+        }
+    }
+
+    /**
+     * 注册 (或取回已注册的) 计数器
+     *
+     * @param labels Prometheus 标签，如 {@code result="ready"}，无标签传空串
+     */
+    public static Counter counter(String name, String help, String labels) {
+        return register(name, help, "counter", labels, () -> new Counter(labels, null));
+    }
+
+    /**
+     * 注册由已有计数源提供数值的计数器 (如缓存命中数)
+     */
+    public static void counter(String name, String help, String labels, LongSupplier source) {
+        register(name, help, "counter", labels, () -> new Counter(labels, source));
+    }
+
+    public static void gauge(String name, String help, LongSupplier source) {
+        register(name, help, "gauge", "", () -> new Gauge("", source));
+    }
+
+    public static Histogram histogram(String name, String help) {
+        return register(name, help, "histogram", "", () -> new Histogram("", LATENCY_BUCKETS));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static synchronized <T extends Metric> T register(String name, String help, String type, String labels,
+                                                              Supplier<T> factory) {
+        Family family = families.computeIfAbsent(name, k -> new Family(name, help, type, new ArrayList<>()));
+        if (!family.type().equals(type)) {
+            throw new IllegalArgumentException("指标 " + name + " 已注册为 " + family.type());
+        }
+        for (Metric metric : family.metrics()) {
+            // 供数型指标重复注册时以最新的数据源为准 (如监控服务重建)
+            if (metric.labels().equals(labels)) {
+                if (metric instanceof Counter c && c.source == null || metric instanceof Histogram) return (T) metric;
+                family.metrics().remove(metric);
+                break;
+            }
+        }
+        T metric = factory.get();
+        family.metrics().add(metric);
+        return metric;
+    }
+
+    /**
+     * Prometheus 文本格式 (version 0.0.4)
+     */
+    public static synchronized String render() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Family family : families.values()) {
+            sb.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            sb.append("# TYPE ").append(family.name()).append(' ').append(family.type()).append('\n');
+            for (Metric metric : family.metrics()) {
+                switch (metric) {
+                    case Counter c -> sample(sb, family.name(), c.labels(), Long.toString(c.get()));
+                    case Gauge g -> sample(sb, family.name(), g.labels(), Long.toString(g.source().getAsLong()));
+                    case Histogram h -> renderHistogram(sb, family.name(), h);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void renderHistogram(StringBuilder sb, String name, Histogram h) {
+        long cumulative = 0;
+        for (int i = 0; i < h.buckets.length; i++) {
+            cumulative += h.buckets[i].sum();
+            String le = i < h.bounds.length ? Double.toString(h.bounds[i]) : "+Inf";
+            String labels = (h.labels().isEmpty() ? "" : h.labels() + ",") + "le=\"" + le + "\"";
+            sample(sb, name + "_bucket", labels, Long.toString(cumulative));
+        }
+        sample(sb, name + "_sum", h.labels(), Double.toString(h.sumNanos.sum() / 1e9));
+        sample(sb, name + "_count", h.labels(), Long.toString(cumulative));
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, String value) {
+        sb.append(name);
+        if (!labels.isEmpty()) sb.append('{').append(labels).append('}');
+        sb.append(' ').append(value).append('\n');
+    }
+}
@@ -0,0 +1,89 @@
+package fun.ceroxe.wcpw;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 画面变化检测器
+ * 网格采样比对：每隔 STEP 像素取一个采样点，变化采样点占比超过阈值即认为画面变化。
+ * 直接读取栅格底层 int[]，采样结果存入两块复用缓冲 (当前帧 / 参考帧)，稳态下零分配。
+ * 非线程安全，由监控循环独占。
+ */
+public class MotionDetector {
+    static final int STEP = 4; // 采样步长
+
+    private final double threshold;
+
+    private int[] reference = new int[0];
+    private int[] current = new int[0];
+    private int refWidth = -1;
+    private int refHeight = -1;
+    private int curWidth = -1;
+    private int curHeight = -1;
+
+    public MotionDetector(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * 与参考帧比较 (不修改参考帧)，无参考帧或尺寸不同视为变化
+     * 本帧的采样结果会暂存，随后可通过 {@link #acceptCurrent()} 设为新的参考帧
+     */
+    public boolean isChanged(BufferedImage frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int samples = ((width + STEP - 1) / STEP) * ((height + STEP - 1) / STEP);
+        if (current.length < samples) current = new int[samples];
+        curWidth = width;
+        curHeight = height;
+
+        boolean comparable = width == refWidth && height == refHeight;
+        int[] cur = current;
+        int[] ref = reference;
+        long diffPixels = 0;
+        int i = 0;
+
+        FramePixels pixels = FramePixels.of(frame);
+        if (pixels != null) {
+            int[] data = pixels.data();
+            int alpha = pixels.alpha();
+            int stride = pixels.stride();
+            for (int y = 0; y < height; y += STEP) {
+                int row = pixels.offset() + y * stride;
+                for (int x = 0; x < width; x += STEP) {
+                    int p = data[row + x] | alpha;
+                    cur[i] = p;
+                    if (comparable && ref[i] != p) diffPixels++;
+                    i++;
+                }
+            }
+        } else {
+            for (int y = 0; y < height; y += STEP) {
+                for (int x = 0; x < width; x += STEP) {
+                    int p = frame.getRGB(x, y);
+                    cur[i] = p;
+                    if (comparable && ref[i] != p) diffPixels++;
+                    i++;
+                }
+            }
+        }
+
+        if (!comparable) return true;
+        return ((double) diffPixels / samples) > threshold;
+    }
+
+    /**
+     * 把最近一次 isChanged 的帧设为参考帧 (交换缓冲，无拷贝)
+     */
+    public void acceptCurrent() {
+        int[] tmp = reference;
+        reference = current;
+        current = tmp;
+        refWidth = curWidth;
+        refHeight = curHeight;
+    }
+
+    public void reset() {
+        refWidth = -1;
+        refHeight = -1;
+    }
+}
@@ -0,0 +1,143 @@
+package fun.ceroxe.wcpw;
+
+import io.github.mymonstercat.JarFileUtil;
+import io.github.mymonstercat.Model;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * OCR 原生库 / 模型解压缓存
+ * RapidOCR 只要目标文件存在就跳过解压、不做任何校验：首次启动解压到一半被杀掉留下的残缺 .so，
+ * 或升级依赖后的旧模型，都会被一直沿用。这里在引擎加载前按 Jar 条目自带的 CRC-32 校验解压目录中的文件，
+ * 一致则直接复用 (重启不再重写约 50MB 文件)，不一致或缺失则重新解压 (先写临时文件，校验后原子替换)。
+ * 解压目录与 RapidOCR 保持一致 ({java.io.tmpdir}/ocrJava/{模型类型})，之后引擎自身的解压会看到文件已存在而跳过。
+ */
+final class NativeLibCache {
+    private static final Logger logger = LoggerFactory.getLogger(NativeLibCache.class);
+
+    // 各平台原生库在 Jar 中的位置，当前类路径上不存在的自动忽略
+    private static final String[] NATIVE_LIBRARIES = {"lib/libRapidOcr.so", "lib/libRapidOcr.dylib", "lib/RapidOcr.dll"};
+
+    /**
+     * @param reused    校验通过、直接复用的文件数
+     * @param extracted 缺失或校验失败、重新解压的文件数
+     */
+    record Report(int reused, int extracted, long costMs) {
+    }
+
+    private NativeLibCache() {
+    }
+
+    /**
+     * 准备指定模型所需的原生库与模型文件 (需在 java.io.tmpdir 设定之后、引擎加载之前调用)
+     */
+    static Report prepare(Model model) throws IOException {
+        List<String> resources = new ArrayList<>(List.of(NATIVE_LIBRARIES));
+        String modelsDir = model.getModelsDir().startsWith("/") ? model.getModelsDir().substring(1) : model.getModelsDir();
+        for (String file : model.getModelFileArray()) {
+            resources.add(modelsDir + "/" + file);
+        }
+        Report report = sync(NativeLibCache.class.getClassLoader(), resources, Paths.get(JarFileUtil.TEMP_DIR, model.getModelType()));
+        logger.info("📦 OCR 原生库缓存: 复用 {} 个 / 解压 {} 个 | 耗时 {}ms", report.reused(), report.extracted(), report.costMs());
+        return report;
+    }
+
+    /**
+     * 把类路径资源同步到目录 (按文件名平铺)，返回复用 / 解压统计
+     */
+    static Report sync(ClassLoader loader, List<String> resources, Path dir) throws IOException {
+        long t0 = System.currentTimeMillis();
+        Files.createDirectories(dir);
+        int reused = 0;
+        int extracted = 0;
+        for (String resource : resources) {
+            URL url = loader.getResource(resource);
+            if (url == null) continue;
+            Path target = dir.resolve(resource.substring(resource.lastIndexOf('/') + 1));
+            if (ensure(url, target)) {
+                extracted++;
+            } else {
+                reused++;
+            }
+        }
+        return new Report(reused, extracted, System.currentTimeMillis() - t0);
+    }
+
+    /**
+     * 校验并在需要时解压单个文件，返回 true 表示重新解压
+     */
+    private static boolean ensure(URL source, Path target) throws IOException {
+        Checksum expected = expectedChecksum(source);
+        if (Files.isRegularFile(target) && Files.size(target) == expected.size()) {
+            try (InputStream in = Files.newInputStream(target)) {
+                if (copy(in, null).equals(expected)) return false;
+            }
+        }
+
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+        try {
+            Checksum written;
+            try (InputStream in = source.openStream(); OutputStream out = Files.newOutputStream(tmp)) {
+                written = copy(in, out);
+            }
+            if (!written.equals(expected)) {
+                throw new IOException("解压校验失败: " + source);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        logger.info("📦 已解压 {}", target.getFileName());
+        return true;
+    }
+
+    private record Checksum(long crc, long size) {
+    }
+
+    /**
+     * 期望的校验值：Jar 内资源直接取中央目录记录的 CRC-32 与长度 (不必解压)，其余 (IDE 下的目录类路径) 现场计算
+     */
+    private static Checksum expectedChecksum(URL source) throws IOException {
+        URLConnection connection = source.openConnection();
+        if (connection instanceof JarURLConnection jar) {
+            JarEntry entry = jar.getJarEntry();
+            if (entry != null && entry.getCrc() != -1 && entry.getSize() != -1) {
+                return new Checksum(entry.getCrc(), entry.getSize());
+            }
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return copy(in, null);
+        }
+    }
+
+    /**
+     * 读完输入流并计算校验值，out 不为 null 时同时写出
+     */
+    private static Checksum copy(InputStream in, OutputStream out) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            crc.update(buffer, 0, n);
+            if (out != null) out.write(buffer, 0, n);
+            size += n;
+        }
+        return new Checksum(crc.getValue(), size);
+    }
+}
@@ -0,0 +1,164 @@
+package fun.ceroxe.wcpw;
+
+import com.benjaminwan.ocrlibrary.TextBlock;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 收款通知文字解析器
+ * 单次遍历 OCR 文字框，不使用正则，同时提取 "第N笔" 单号与全部金额候选 (单位：分)。
+ * 空白字符一律忽略 (OCR 常在数字间插入空格)。
+ *
+ * <p>金额候选规则：
+ * <ul>
+ *     <li>带小数点：整数部分 + 1~2 位小数，如 "¥1.39" -> 139；小数超过 2 位或多个小数点的不是金额</li>
+ *     <li>不带小数点且至少 3 位、紧跟在 ¥ / ￥ 或 "收款金额" 之后：视为 OCR 丢失了小数点，如 "￥139" -> 139 (即 ¥1.39)；
+ *     其他位置的整数 (日期、商户号等) 不是金额</li>
+ *     <li>数字间的千分位逗号忽略</li>
+ *     <li>含 "第N笔" 的文字框 (如 "今日第12笔收款，共计￥56.70") 整框不产生金额，"共计" / "合计" 之后的数字也不是金额：
+ *     当日累计金额若恰好等于另一笔待支付订单，会让那笔订单被误判到账</li>
+ * </ul>
+ * 撮合时按分精确比较，不再做子串匹配。非线程安全，每条 OCR 线程持有一个实例。
+ */
+public class NotificationParser {
+    private static final int MAX_DIGITS = 15;
+    private static final String AMOUNT_LABEL = "收款金额";
+
+    /**
+     * @param serial      单号，未识别到为 -1
+     * @param amountCents 金额候选 (分)，按出现顺序
+     */
+    public record Parsed(long serial, long[] amountCents) {
+        public boolean containsAmount(long cents) {
+            for (long candidate : amountCents) {
+                if (candidate == cents) return true;
+            }
+            return false;
+        }
+    }
+
+    private long[] scratch = new long[16];
+    private int count;
+
+    public Parsed parse(List<TextBlock> blocks) {
+        count = 0;
+        long serial = -1;
+        for (TextBlock block : blocks) {
+            long blockSerial = scanBlock(block.getText());
+            if (serial == -1) serial = blockSerial;
+        }
+        return new Parsed(serial, Arrays.copyOf(scratch, count));
+    }
+
+    /**
+     * 扫描一个文字框：金额候选追加到 scratch，返回本框内第一个单号 (无则 -1)
+     */
+    private long scanBlock(String text) {
+        long serial = -1;
+        int blockStart = count;
+        int len = text.length();
+        int i = 0;
+        char prev = 0; // 上一个非空白字符
+        boolean afterTotal = false;
+        while (i < len) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (!isDigit(c)) {
+                if (c == '计' && (prev == '共' || prev == '合')) afterTotal = true;
+                prev = c;
+                i++;
+                continue;
+            }
+            int start = i;
+
+            // 读取一个数字记号：整数部分 [. 小数部分]
+            long intPart = 0;
+            int intDigits = 0;
+            long fracPart = 0;
+            int fracDigits = 0;
+            int dots = 0;
+            boolean overflow = false;
+            while (i < len) {
+                c = text.charAt(i);
+                if (isDigit(c)) {
+                    if (dots == 0) {
+                        if (++intDigits > MAX_DIGITS) overflow = true;
+                        else intPart = intPart * 10 + (c - '0');
+                    } else {
+                        fracDigits++;
+                        if (fracDigits <= 2) fracPart = fracPart * 10 + (c - '0');
+                    }
+                    i++;
+                } else if (Character.isWhitespace(c)) {
+                    i++;
+                } else if ((c == '.' || c == ',') && isDigit(nextNonSpace(text, i + 1))) {
+                    if (c == '.') dots++;
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            char next = nextNonSpace(text, i);
+
+            if (prev == '第' && next == '笔' && dots == 0) {
+                // 单号，不参与金额
+                if (serial == -1 && !overflow) serial = intPart;
+            } else if (!overflow && !afterTotal) {
+                if (dots == 1 && fracDigits <= 2) {
+                    add(intPart * 100 + (fracDigits == 1 ? fracPart * 10 : fracPart));
+                } else if (dots == 0 && intDigits >= 3 && (isCurrency(prev) || followsAmountLabel(text, start))) {
+                    add(intPart);
+                }
+            }
+            prev = '0';
+        }
+        // 单号所在的文字框是当日笔数 / 累计金额，不含本笔金额
+        if (serial != -1) count = blockStart;
+        return serial;
+    }
+
+    /**
+     * 数字前 (跳过空白与冒号) 是否紧接 "收款金额"
+     */
+    private static boolean followsAmountLabel(String text, int numberStart) {
+        int i = numberStart - 1;
+        while (i >= 0 && (Character.isWhitespace(text.charAt(i)) || text.charAt(i) == ':' || text.charAt(i) == '：')) i--;
+        return i >= AMOUNT_LABEL.length() - 1 && text.startsWith(AMOUNT_LABEL, i - AMOUNT_LABEL.length() + 1);
+    }
+
+    private static boolean isCurrency(char c) {
+        return c == '¥' || c == '￥';
+    }
+
+    /**
+     * 文字中是否含数字或收款关键字 (日志筛选用)
+     */
+    public static boolean isKeyText(String text) {
+        if (text.contains("收款") || text.indexOf('￥') >= 0 || text.indexOf('¥') >= 0) return true;
+        for (int i = 0; i < text.length(); i++) {
+            if (isDigit(text.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    private void add(long cents) {
+        if (count == scratch.length) scratch = Arrays.copyOf(scratch, count * 2);
+        scratch[count++] = cents;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static char nextNonSpace(String text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) return c;
+        }
+        return 0;
+    }
+}
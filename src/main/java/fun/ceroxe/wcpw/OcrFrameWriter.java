@@ -0,0 +1,142 @@
+package fun.ceroxe.wcpw;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * OCR 输入帧写出器
+ * RapidOCR 的 native 接口只接受文件路径，无法直接传像素。
+ * 这里把截图按未压缩 24 位 BMP 直接从像素数组编码到复用缓冲区，写入内存盘 (/dev/shm) 上的固定文件，
+ * 省去每次扫描的 PNG 压缩、临时文件创建与删除；BMP 写出失败时才退回 PNG 临时文件。
+ * 非线程安全，每条 OCR 线程持有一个实例。
+ */
+public class OcrFrameWriter {
+    private static final Logger logger = LoggerFactory.getLogger(OcrFrameWriter.class);
+
+    private static final int HEADER_SIZE = 54;
+    private static final Path SHM_DIR = Paths.get("/dev/shm");
+
+    private final Path framePath;
+    private byte[] buffer = new byte[0];
+    private int[] rowPixels = new int[0];
+
+    public OcrFrameWriter() {
+        this.framePath = resolveFrameDir().resolve("wcpw_frame_" + ProcessHandle.current().pid() + ".bmp");
+    }
+
+    /**
+     * 写出帧并返回供 OCR 读取的路径，用完后交给 {@link #release(Path)}
+     */
+    public Path write(BufferedImage frame) throws IOException {
+        try {
+            int length = encodeBmp(frame);
+            try (FileChannel channel = FileChannel.open(framePath, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, length);
+                while (bb.hasRemaining()) channel.write(bb);
+            }
+            return framePath;
+        } catch (IOException e) {
+            logger.warn("⚠️ BMP 帧写出失败，退回 PNG 临时文件: {}", e.getMessage());
+            Path tempFile = Files.createTempFile("ocr_", ".png");
+            ImageIO.write(frame, "png", tempFile.toFile());
+            return tempFile;
+        }
+    }
+
+    /**
+     * 复用文件保留到下次覆盖，只有 PNG 兜底产生的临时文件需要删除
+     */
+    public void release(Path path) {
+        if (path == null || path.equals(framePath)) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 编码到 buffer，返回有效字节数
+     */
+    int encodeBmp(BufferedImage frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int rowSize = (width * 3 + 3) & ~3;
+        int imageSize = rowSize * height;
+        int length = HEADER_SIZE + imageSize;
+        if (buffer.length < length) buffer = new byte[length];
+        byte[] out = buffer;
+
+        // BITMAPFILEHEADER
+        out[0] = 'B';
+        out[1] = 'M';
+        putInt(out, 2, length);
+        putInt(out, 6, 0);
+        putInt(out, 10, HEADER_SIZE);
+        // BITMAPINFOHEADER
+        putInt(out, 14, 40);
+        putInt(out, 18, width);
+        putInt(out, 22, height); // 正高度 = 自底向上存储
+        out[26] = 1;
+        out[27] = 0;
+        out[28] = 24;
+        out[29] = 0;
+        putInt(out, 30, 0); // BI_RGB
+        putInt(out, 34, imageSize);
+        putInt(out, 38, 2835);
+        putInt(out, 42, 2835);
+        putInt(out, 46, 0);
+        putInt(out, 50, 0);
+
+        FramePixels pixels = FramePixels.of(frame);
+        if (pixels == null && rowPixels.length < width) rowPixels = new int[width];
+
+        for (int y = 0; y < height; y++) {
+            int pos = HEADER_SIZE + (height - 1 - y) * rowSize;
+            int[] src;
+            int base;
+            if (pixels != null) {
+                src = pixels.data();
+                base = pixels.offset() + y * pixels.stride();
+            } else {
+                src = rowPixels;
+                base = 0;
+                frame.getRGB(0, y, width, 1, rowPixels, 0, width);
+            }
+            for (int x = 0; x < width; x++) {
+                int rgb = src[base + x];
+                out[pos++] = (byte) rgb;
+                out[pos++] = (byte) (rgb >> 8);
+                out[pos++] = (byte) (rgb >> 16);
+            }
+            for (int pad = width * 3; pad < rowSize; pad++) out[pos++] = 0;
+        }
+        return length;
+    }
+
+    private static void putInt(byte[] out, int pos, int value) {
+        out[pos] = (byte) value;
+        out[pos + 1] = (byte) (value >> 8);
+        out[pos + 2] = (byte) (value >> 16);
+        out[pos + 3] = (byte) (value >> 24);
+    }
+
+    private static Path resolveFrameDir() {
+        String configured = AppConfig.get("ocr.frame.dir");
+        if (configured != null && !configured.isBlank()) return Paths.get(configured);
+        if (Files.isDirectory(SHM_DIR) && Files.isWritable(SHM_DIR)) return SHM_DIR;
+        return Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+}
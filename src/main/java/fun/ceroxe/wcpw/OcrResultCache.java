@@ -0,0 +1,98 @@
+package fun.ceroxe.wcpw;
+
+import com.benjaminwan.ocrlibrary.TextBlock;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OCR 结果缓存：以 OCR 输入图像的内容哈希为键的有界 LRU
+ * 心跳扫描与像素完全相同的重复帧只需计算一次哈希，无需再次推理。
+ */
+public class OcrResultCache {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 一次识别的解析结果
+     *
+     * @param parsed 单号与金额候选
+     * @param blocks 原始文字框
+     */
+    public record ScanResult(NotificationParser.Parsed parsed, List<TextBlock> blocks) {
+        public long serial() {
+            return parsed.serial();
+        }
+    }
+
+    private final Map<Long, ScanResult> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public OcrResultCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ScanResult> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public ScanResult get(long key) {
+        ScanResult result;
+        synchronized (entries) {
+            result = entries.get(key);
+        }
+        (result != null ? hits : misses).incrementAndGet();
+        return result;
+    }
+
+    public void put(long key, ScanResult result) {
+        synchronized (entries) {
+            entries.put(key, result);
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * 图像内容的 64 位 FNV-1a 哈希 (含尺寸)，与像素布局无关
+     */
+    public static long contentHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long h = FNV_OFFSET;
+        h = (h ^ width) * FNV_PRIME;
+        h = (h ^ height) * FNV_PRIME;
+
+        FramePixels pixels = FramePixels.of(image);
+        if (pixels != null) {
+            int[] data = pixels.data();
+            int alpha = pixels.alpha();
+            for (int y = 0; y < height; y++) {
+                int row = pixels.offset() + y * pixels.stride();
+                for (int x = 0; x < width; x++) {
+                    h = (h ^ (data[row + x] | alpha)) * FNV_PRIME;
+                }
+            }
+        } else {
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    h = (h ^ row[x]) * FNV_PRIME;
+                }
+            }
+        }
+        return h;
+    }
+}
@@ -0,0 +1,145 @@
+package fun.ceroxe.wcpw;
+
+import com.benjaminwan.ocrlibrary.OcrResult;
+import com.benjaminwan.ocrlibrary.TextBlock;
+import io.github.mymonstercat.Model;
+import io.github.mymonstercat.ocr.InferenceEngine;
+import io.github.mymonstercat.ocr.config.HardwareConfig;
+import io.github.mymonstercat.ocr.config.ParamConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * OCR 引擎封装
+ * RapidOCR 的 native 引擎是进程内单例 (InferenceEngine.getInstance 始终返回同一个 native 对象)，
+ * 无法组成实例池并行推理；并行度改由引擎内部的推理线程数 (ocr.threads，默认 CPU 核数) 提供，调用在此串行化。
+ * <p>
+ * 启动时用一张合成的收款卡片预热，模型加载与首次推理的冷启动不再落到第一笔订单上。
+ * 每次推理拆分 检测 (DBNet) / 方向分类 / 文字识别 (CRNN) 三段耗时，写入日志与指标。
+ * <ul>
+ *     <li>ocr.mode=full：引擎默认参数 (图像四周各补 50 像素再检测)</li>
+ *     <li>ocr.mode=fast：识别区域已经是截取的卡片 / 脏区域 (带边距)，只补 10 像素，
+ *     并提高文字框得分门限，噪点框不再进入识别阶段</li>
+ * </ul>
+ */
+public class OcrRunner {
+    private static final Logger logger = LoggerFactory.getLogger(OcrRunner.class);
+
+    /**
+     * 单次推理的分段耗时 (毫秒)
+     *
+     * @param boxes 检测到并完成识别的文字框数
+     */
+    public record Timing(double detectMs, double classifyMs, double recognizeMs, double totalMs, int boxes) {
+        @Override
+        public String toString() {
+            return String.format("检测%.0f 分类%.0f 识别%.0f/%d框", detectMs, classifyMs, recognizeMs, boxes);
+        }
+    }
+
+    public record Recognition(List<TextBlock> blocks, Timing timing) {
+    }
+
+    private final InferenceEngine engine;
+    private final ParamConfig params;
+    private final String mode;
+    private final Metrics.Histogram detectHistogram =
+            Metrics.histogram("wcpw_ocr_detect_seconds", "OCR text detection (DBNet) time");
+    private final Metrics.Histogram classifyHistogram =
+            Metrics.histogram("wcpw_ocr_classify_seconds", "OCR text angle classification time");
+    private final Metrics.Histogram recognizeHistogram =
+            Metrics.histogram("wcpw_ocr_recognize_seconds", "OCR text recognition (CRNN) time");
+
+    public OcrRunner() {
+        try {
+            NativeLibCache.prepare(Model.ONNX_PPOCR_V3);
+        } catch (Exception e) {
+            // 交给引擎自身的解压流程
+            logger.warn("⚠️ OCR 原生库缓存校验失败: {}", e.getMessage());
+        }
+        int threads = AppConfig.getInt("ocr.threads", Runtime.getRuntime().availableProcessors());
+        HardwareConfig hardware = HardwareConfig.getOnnxConfig();
+        hardware.setNumThread(threads);
+        this.engine = InferenceEngine.getInstance(Model.ONNX_PPOCR_V3, hardware);
+
+        String configured = AppConfig.get("ocr.mode");
+        this.mode = configured == null || configured.isBlank() ? "full" : configured;
+        this.params = ParamConfig.getDefaultConfig();
+        switch (mode) {
+            case "full" -> {
+            }
+            case "fast" -> {
+                params.setPadding(10);
+                params.setBoxScoreThresh(0.6f);
+            }
+            default -> throw new IllegalArgumentException("未知的 ocr.mode: " + mode);
+        }
+        logger.info("🧠 OCR 推理线程 {} | 模式 {}", threads, mode);
+    }
+
+    /**
+     * 识别图片文件，返回 null 表示引擎未给出结果
+     */
+    public synchronized Recognition run(Path image) {
+        OcrResult result = engine.runOcr(image.toAbsolutePath().toString(), params);
+        if (result == null || result.getTextBlocks() == null) return null;
+
+        double classify = 0;
+        double recognize = 0;
+        for (TextBlock block : result.getTextBlocks()) {
+            classify += block.getAngleTime();
+            recognize += block.getCrnnTime();
+        }
+        Timing timing = new Timing(result.getDbNetTime(), classify, recognize, result.getDetectTime(), result.getTextBlocks().size());
+        detectHistogram.observeNanos((long) (timing.detectMs() * 1_000_000));
+        classifyHistogram.observeNanos((long) (timing.classifyMs() * 1_000_000));
+        recognizeHistogram.observeNanos((long) (timing.recognizeMs() * 1_000_000));
+        return new Recognition(result.getTextBlocks(), timing);
+    }
+
+    /**
+     * 在合成的收款卡片上跑一次完整推理
+     */
+    public void warmUp(OcrFrameWriter writer) {
+        long t0 = System.currentTimeMillis();
+        Path path = null;
+        try {
+            path = writer.write(syntheticCard());
+            Recognition recognition = run(path);
+            logger.info("🔥 OCR 预热完成 | 耗时 {}ms{}", System.currentTimeMillis() - t0,
+                    recognition == null ? "" : " (" + recognition.timing() + ")");
+        } catch (Exception e) {
+            // 预热失败不影响服务，首单推理时再暴露问题
+            logger.warn("⚠️ OCR 预热失败: {}", e.getMessage());
+        } finally {
+            writer.release(path);
+        }
+    }
+
+    /**
+     * 与 ROI 同尺寸的收款通知卡片
+     */
+    static BufferedImage syntheticCard() {
+        BufferedImage image = new BufferedImage(380, 450, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(new Color(0xEDEDED));
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.setColor(Color.WHITE);
+        g.fillRoundRect(20, 200, 340, 220, 12, 12);
+        g.setColor(new Color(0x191919));
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 16));
+        g.drawString("收款到账通知", 40, 235);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 30));
+        g.drawString("￥0.01", 40, 290);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+        g.drawString("今日第1笔收款", 40, 340);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,114 @@
+package fun.ceroxe.wcpw;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 内存订单簿：保存所有等待支付的订单
+ * 按金额 (分) 建立唯一索引，按截止时间排序，供共享的监控循环统一撮合
+ */
+public class OrderBook {
+
+    public record Order(
+            String taskId,
+            DTOs.PaymentRequest request,
+            long amountCents,
+            long admittedAt,
+            long deadline
+    ) {
+        public String amountText() {
+            return String.format("%.2f", amountCents / 100.0);
+        }
+    }
+
+    private final Map<Long, Order> byAmount = new HashMap<>();
+    private final Map<String, Order> byTaskId = new HashMap<>();
+    private final TreeSet<Order> byDeadline = new TreeSet<>((a, b) -> {
+        int c = Long.compare(a.deadline(), b.deadline());
+        return c != 0 ? c : a.taskId().compareTo(b.taskId());
+    });
+    private final int capacity;
+
+    public OrderBook(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public static long toCents(double money) {
+        return Math.round(money * 100);
+    }
+
+    /**
+     * 尝试登记订单
+     *
+     * @return null 表示登记成功；否则返回阻挡本次登记的订单 (同金额 / 同单号 / 订单簿已满时为最早到期的订单)
+     */
+    public synchronized Order admit(Order order) {
+        Order blocker = byAmount.get(order.amountCents());
+        if (blocker == null) blocker = byTaskId.get(order.taskId());
+        if (blocker == null && byDeadline.size() >= capacity) blocker = byDeadline.first();
+        if (blocker != null) return blocker;
+
+        byAmount.put(order.amountCents(), order);
+        byTaskId.put(order.taskId(), order);
+        byDeadline.add(order);
+        return null;
+    }
+
+    /**
+     * 按金额撮合并移除订单，未命中返回 null
+     */
+    public synchronized Order resolve(long amountCents) {
+        Order order = byAmount.get(amountCents);
+        if (order != null) remove(order);
+        return order;
+    }
+
+    /**
+     * 移除并返回所有已过截止时间的订单
+     */
+    public synchronized List<Order> expire(long now) {
+        List<Order> expired = new ArrayList<>();
+        Iterator<Order> it = byDeadline.iterator();
+        while (it.hasNext()) {
+            Order order = it.next();
+            if (order.deadline() > now) break;
+            it.remove();
+            byAmount.remove(order.amountCents());
+            byTaskId.remove(order.taskId());
+            expired.add(order);
+        }
+        return expired;
+    }
+
+    /**
+     * 按单号查询待支付订单，不存在返回 null
+     */
+    public synchronized Order find(String taskId) {
+        return byTaskId.get(taskId);
+    }
+
+    /**
+     * 按截止时间升序返回当前所有待支付订单的快照
+     */
+    public synchronized List<Order> snapshot() {
+        return new ArrayList<>(byDeadline);
+    }
+
+    public synchronized boolean isEmpty() {
+        return byDeadline.isEmpty();
+    }
+
+    public synchronized int size() {
+        return byDeadline.size();
+    }
+
+    private void remove(Order order) {
+        byDeadline.remove(order);
+        byAmount.remove(order.amountCents());
+        byTaskId.remove(order.taskId());
+    }
+}
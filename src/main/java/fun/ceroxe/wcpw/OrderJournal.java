@@ -0,0 +1,461 @@
+package fun.ceroxe.wcpw;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * 订单日志：内存映射的追加式二进制日志
+ * 记录订单登记 (ADMIT)、检测结果 (RESOLVED) 与回调结果 (SETTLED)，重启后回放恢复待支付订单与未送达的回调。
+ *
+ * <p>记录格式：[int 长度][byte 类型][负载][int CRC32C]，长度为 0 表示日志结束；回放遇到截断或校验失败的尾部即停止。
+ * 写入只落到映射内存 (进程崩溃不丢失)，由 checkpoint() 周期性 force 到磁盘，热路径上没有逐条 fsync；
+ * force 在锁外进行，刷盘期间的写入不会被阻塞。
+ *
+ * <p>使用两个文件交替 (ping-pong)：压缩时把存活状态写入另一个文件，写入更高代数的文件头并切换，压缩本身不刷盘。
+ * 文件头记录压缩写入的记录数，打开时选择文件头有效且代数最高的一个；其记录不足该数 (文件头先于记录落盘后系统崩溃)
+ * 时回退到上一代。上一代要等新一代刷盘后才会被下一次压缩覆盖，在此之前文件写满则就地扩容。
+ * 不需要重命名或删除仍被映射的文件。
+ */
+public class OrderJournal implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+
+    private static final int MAGIC = 0x57435057; // "WCPW"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_OVERHEAD = 4 + 1 + 4;
+
+    static final byte ADMIT = 1;
+    static final byte RESOLVED = 2;
+    static final byte SETTLED = 3;
+
+    /**
+     * 已检测 (成功或超时) 但尚未确认送达的回调
+     */
+    public record PendingCallback(String taskId, String callbackUrl, DTOs.CallbackPayload payload) {
+    }
+
+    /**
+     * 回放结果
+     *
+     * @param orders    重启前仍在等待支付的订单
+     * @param callbacks 重启前尚未送达的回调
+     */
+    public record Recovery(List<OrderBook.Order> orders, List<PendingCallback> callbacks, int records, long costMs) {
+    }
+
+    private final Path[] files;
+    private final int minCapacity;
+    private final FileChannel[] channels = new FileChannel[2];
+    private final MappedByteBuffer[] maps = new MappedByteBuffer[2];
+    private final CRC32C crc = new CRC32C();
+
+    // 存活状态，压缩时据此重写日志
+    private final Map<String, OrderBook.Order> openOrders = new LinkedHashMap<>();
+    private final Map<String, PendingCallback> pendingCallbacks = new LinkedHashMap<>();
+
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+    private int active;
+    private long generation;
+    private long syncedGeneration; // 已刷盘的代数，未刷盘的新一代不能再被压缩覆盖上一代
+    private int records;     // 当前文件中的记录数
+    private int deadRecords; // 其中压缩时可丢弃的记录数
+    private boolean dirty;
+
+    private OrderJournal(Path dir, int minCapacity) {
+        this.files = new Path[]{dir.resolve("orders-0.wal"), dir.resolve("orders-1.wal")};
+        this.minCapacity = minCapacity;
+    }
+
+    /**
+     * 打开 (不存在则创建) 日志目录并回放
+     */
+    public static OrderJournal open(Path dir, int capacityBytes) throws IOException {
+        Files.createDirectories(dir);
+        OrderJournal journal = new OrderJournal(dir, Math.max(capacityBytes, HEADER_SIZE + 4096));
+        journal.mapBoth();
+        return journal;
+    }
+
+    /**
+     * 回放日志，恢复存活状态，并压缩为一个干净的新代
+     */
+    public synchronized Recovery replay() throws IOException {
+        long start = System.nanoTime();
+        Header header0 = readHeader(maps[0]);
+        Header header1 = readHeader(maps[1]);
+        int records = 0;
+        if (header0 != null || header1 != null) {
+            active = header0 == null || (header1 != null && header1.generation() > header0.generation()) ? 1 : 0;
+            Header newest = active == 0 ? header0 : header1;
+            Header previous = active == 0 ? header1 : header0;
+            generation = newest.generation();
+            records = replayFile(maps[active]);
+            if (records < newest.baseRecords() && previous != null) {
+                logger.warn("⚠️ 订单日志第 {} 代未完整落盘 ({}/{} 条)，回退到第 {} 代",
+                        newest.generation(), records, newest.baseRecords(), previous.generation());
+                openOrders.clear();
+                pendingCallbacks.clear();
+                active = 1 - active;
+                records = replayFile(maps[active]);
+            }
+        }
+        // 磁盘上的现有文件视为已落盘，可以被压缩覆盖
+        syncedGeneration = generation;
+        compact(0);
+
+        long costMs = (System.nanoTime() - start) / 1_000_000;
+        return new Recovery(new ArrayList<>(openOrders.values()), new ArrayList<>(pendingCallbacks.values()), records, costMs);
+    }
+
+    public synchronized void recordAdmit(OrderBook.Order order) {
+        if (openOrders.put(order.taskId(), order) != null) deadRecords++;
+        encodeAdmit(order);
+        append(ADMIT);
+    }
+
+    public synchronized void recordResolved(PendingCallback callback) {
+        if (openOrders.remove(callback.taskId()) != null) deadRecords++;
+        if (pendingCallbacks.put(callback.taskId(), callback) != null) deadRecords++;
+        encodeResolved(callback);
+        append(RESOLVED);
+    }
+
+    /**
+     * 回调已有最终结果 (送达或被明确拒绝)
+     */
+    public synchronized void recordSettled(String taskId, int httpCode) {
+        if (pendingCallbacks.remove(taskId) == null) return;
+        // 对应的 RESOLVED 与本条 SETTLED 在压缩后都不再需要
+        deadRecords += 2;
+        scratch.clear();
+        putString(taskId);
+        putInt(httpCode);
+        append(SETTLED);
+    }
+
+    /**
+     * 检查点：失效记录过多时压缩，然后在锁外刷盘
+     */
+    public void checkpoint() {
+        MappedByteBuffer map;
+        long gen;
+        synchronized (this) {
+            if (!dirty) return;
+            try {
+                if (deadRecords > 64 && deadRecords * 2 > records && syncedGeneration == generation) compact(0);
+            } catch (IOException e) {
+                logger.error("❌ 订单日志压缩失败", e);
+            }
+            map = maps[active];
+            gen = generation;
+            dirty = false;
+        }
+        // 刷盘期间的追加写入会重新置 dirty，由下一次检查点刷盘
+        map.force();
+        synchronized (this) {
+            syncedGeneration = Math.max(syncedGeneration, gen);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (maps[active] != null) maps[active].force();
+        for (FileChannel channel : channels) {
+            if (channel != null) channel.close();
+        }
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 追加 scratch 中编码好的一条记录
+     */
+    private void append(byte type) {
+        int need = RECORD_OVERHEAD + scratch.position() + 4; // 末尾保留一个终止符
+        try {
+            ByteBuffer payload;
+            if (maps[active].remaining() < need) {
+                // 压缩会覆盖 scratch，先取出本条记录
+                payload = copy();
+                if (syncedGeneration == generation) {
+                    compact(need);
+                } else {
+                    grow(need);
+                }
+            } else {
+                payload = scratch.flip();
+            }
+            writeRecord(maps[active], type, payload);
+            records++;
+            dirty = true;
+        } catch (IOException e) {
+            // 日志只用于崩溃恢复，写入失败不影响当前业务
+            logger.error("❌ 订单日志写入失败", e);
+        }
+    }
+
+    private void writeRecord(ByteBuffer map, byte type, ByteBuffer payload) {
+        crc.reset();
+        crc.update(type);
+        crc.update(payload.duplicate());
+        map.putInt(1 + payload.remaining());
+        map.put(type);
+        map.put(payload);
+        map.putInt((int) crc.getValue());
+        // 先写完记录再清零下一个长度位，保证任何时刻回放都能停在完整记录之后
+        map.putInt(map.position(), 0);
+    }
+
+    /**
+     * 当前代尚未刷盘、不能压缩时就地扩容当前文件
+     */
+    private void grow(int need) throws IOException {
+        int position = maps[active].position();
+        int capacity = maps[active].capacity();
+        while (capacity - position < need) capacity *= 2;
+        remap(active, capacity);
+        maps[active].position(position);
+    }
+
+    /**
+     * 把存活状态写入另一个文件，成为新的一代 (不刷盘，由下一次检查点完成)
+     *
+     * @param reserve 压缩后至少还需追加的字节数
+     */
+    private void compact(int reserve) throws IOException {
+        List<ByteBuffer> live = new ArrayList<>();
+        List<Byte> types = new ArrayList<>();
+        int bytes = HEADER_SIZE + 4;
+        for (OrderBook.Order order : openOrders.values()) {
+            encodeAdmit(order);
+            live.add(copy());
+            types.add(ADMIT);
+        }
+        for (PendingCallback callback : pendingCallbacks.values()) {
+            encodeResolved(callback);
+            live.add(copy());
+            types.add(RESOLVED);
+        }
+        for (ByteBuffer buf : live) bytes += RECORD_OVERHEAD + buf.remaining();
+
+        int target = 1 - active;
+        int capacity = minCapacity;
+        while (capacity < bytes * 2 + reserve) capacity *= 2;
+        if (maps[target].capacity() < capacity) remap(target, capacity);
+
+        MappedByteBuffer map = maps[target];
+        map.clear();
+        map.position(HEADER_SIZE);
+        for (int i = 0; i < live.size(); i++) {
+            writeRecord(map, types.get(i), live.get(i));
+        }
+        // 文件头最后写入：此前进程崩溃时旧一代仍然有效；记录数用于发现系统崩溃后未落盘的记录
+        writeHeader(map, generation + 1, live.size());
+
+        generation++;
+        active = target;
+        records = live.size();
+        deadRecords = 0;
+        dirty = true;
+    }
+
+    // ==================== 回放 ====================
+
+    private int replayFile(MappedByteBuffer map) {
+        map.clear();
+        map.position(HEADER_SIZE);
+        int count = 0;
+        while (map.remaining() >= 4) {
+            int start = map.position();
+            int length = map.getInt();
+            if (length <= 0 || length + 4 > map.remaining()) break;
+
+            ByteBuffer body = map.slice(map.position(), length);
+            map.position(map.position() + length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != map.getInt()) {
+                logger.warn("⚠️ 订单日志在偏移 {} 处校验失败，忽略其后的记录", start);
+                break;
+            }
+            try {
+                apply(body);
+            } catch (RuntimeException e) {
+                logger.warn("⚠️ 订单日志在偏移 {} 处记录损坏，忽略其后的记录", start);
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private void apply(ByteBuffer body) {
+        byte type = body.get();
+        switch (type) {
+            case ADMIT -> {
+                OrderBook.Order order = decodeAdmit(body);
+                openOrders.put(order.taskId(), order);
+            }
+            case RESOLVED -> {
+                PendingCallback callback = decodeResolved(body);
+                openOrders.remove(callback.taskId());
+                pendingCallbacks.put(callback.taskId(), callback);
+            }
+            case SETTLED -> pendingCallbacks.remove(getString(body));
+            default -> throw new IllegalStateException("未知记录类型 " + type);
+        }
+    }
+
+    // ==================== 编解码 ====================
+
+    private void encodeAdmit(OrderBook.Order order) {
+        DTOs.PaymentRequest req = order.request();
+        scratch.clear();
+        putString(order.taskId());
+        putDouble(req.money());
+        putString(req.timestamp());
+        putString(req.callbackUrl());
+        putLong(order.amountCents());
+        putLong(order.admittedAt());
+        putLong(order.deadline());
+    }
+
+    private static OrderBook.Order decodeAdmit(ByteBuffer buf) {
+        String taskId = getString(buf);
+        double money = buf.getDouble();
+        String timestamp = getString(buf);
+        String callbackUrl = getString(buf);
+        // 鉴权 Token 不落盘
+        DTOs.PaymentRequest req = new DTOs.PaymentRequest(null, money, timestamp, callbackUrl);
+        return new OrderBook.Order(taskId, req, buf.getLong(), buf.getLong(), buf.getLong());
+    }
+
+    private void encodeResolved(PendingCallback callback) {
+        DTOs.CallbackPayload payload = callback.payload();
+        scratch.clear();
+        putString(callback.taskId());
+        putString(callback.callbackUrl());
+        putString(payload.oid());
+        putString(payload.status());
+        putString(payload.requestTimestamp());
+        putLong(payload.detectTimestamp());
+        putDouble(payload.amount());
+        putString(payload.message());
+    }
+
+    private static PendingCallback decodeResolved(ByteBuffer buf) {
+        String taskId = getString(buf);
+        String callbackUrl = getString(buf);
+        DTOs.CallbackPayload payload = new DTOs.CallbackPayload(
+                getString(buf), getString(buf), getString(buf), buf.getLong(), buf.getDouble(), getString(buf));
+        return new PendingCallback(taskId, callbackUrl, payload);
+    }
+
+    // 编码写入复用的 scratch 缓冲区，容量不足时扩容
+
+    private void putString(String s) {
+        if (s == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + bytes.length).putInt(bytes.length).put(bytes);
+    }
+
+    private void putInt(int v) {
+        ensure(4).putInt(v);
+    }
+
+    private void putLong(long v) {
+        ensure(8).putLong(v);
+    }
+
+    private void putDouble(double v) {
+        ensure(8).putDouble(v);
+    }
+
+    private ByteBuffer ensure(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            grown.put(scratch);
+            scratch = grown;
+        }
+        return scratch;
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 取出 scratch 中刚编码好的记录 (读模式副本)
+     */
+    private ByteBuffer copy() {
+        ByteBuffer encoded = scratch.duplicate().flip();
+        ByteBuffer copy = ByteBuffer.allocate(encoded.remaining());
+        copy.put(encoded).flip();
+        return copy;
+    }
+
+    // ==================== 文件 ====================
+
+    private void mapBoth() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            channels[i] = FileChannel.open(files[i],
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            remap(i, (int) Math.max(minCapacity, Math.min(channels[i].size(), Integer.MAX_VALUE)));
+        }
+    }
+
+    private void remap(int index, int capacity) throws IOException {
+        maps[index] = channels[index].map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * @param baseRecords 压缩时写入的记录数
+     */
+    private record Header(long generation, int baseRecords) {
+    }
+
+    private void writeHeader(ByteBuffer map, long gen, int baseRecords) {
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        map.putLong(8, gen);
+        map.putInt(16, baseRecords);
+        crc.reset();
+        crc.update(map.slice(0, 20));
+        map.putInt(20, (int) crc.getValue());
+    }
+
+    /**
+     * 文件头有效时返回代数与基础记录数，否则 null
+     */
+    private Header readHeader(ByteBuffer map) {
+        if (map.capacity() < HEADER_SIZE) return null;
+        if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) return null;
+        crc.reset();
+        crc.update(map.slice(0, 20));
+        if ((int) crc.getValue() != map.getInt(20)) return null;
+        return new Header(map.getLong(8), map.getInt(16));
+    }
+}
@@ -0,0 +1,89 @@
+package fun.ceroxe.wcpw;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 订单结果看板：保留最近结束的订单结果 (与回调内容一致)，供状态查询与长轮询
+ * 长轮询请求以回调形式登记为等待者 (请求本身挂在 IO 线程上，不占用 Worker 线程)，订单结束时逐个唤醒。
+ */
+public class OrderStatusBoard {
+
+    private final int capacity;
+    private final Map<String, DTOs.CallbackPayload> resolved;
+    private final Map<String, List<Consumer<DTOs.CallbackPayload>>> waiters = new HashMap<>();
+
+    public OrderStatusBoard(int capacity) {
+        this.capacity = capacity;
+        // 按结束顺序淘汰最早的结果
+        this.resolved = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DTOs.CallbackPayload> eldest) {
+                return size() > OrderStatusBoard.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * 查询已结束订单的结果，未结束或已被淘汰返回 null
+     */
+    public synchronized DTOs.CallbackPayload lookup(String taskId) {
+        return resolved.get(taskId);
+    }
+
+    /**
+     * 记录订单结果并唤醒该订单的所有等待者 (在调用线程上执行)
+     */
+    public void publish(DTOs.CallbackPayload payload) {
+        List<Consumer<DTOs.CallbackPayload>> woken;
+        synchronized (this) {
+            resolved.put(payload.oid(), payload);
+            woken = waiters.remove(payload.oid());
+        }
+        if (woken == null) return;
+        for (Consumer<DTOs.CallbackPayload> waiter : woken) {
+            waiter.accept(payload);
+        }
+    }
+
+    /**
+     * 等待订单结束；已结束时立即回调
+     *
+     * @return 注销句柄，长轮询超时或请求结束时调用
+     */
+    public Runnable await(String taskId, Consumer<DTOs.CallbackPayload> waiter) {
+        DTOs.CallbackPayload done;
+        synchronized (this) {
+            done = resolved.get(taskId);
+            if (done == null) {
+                waiters.computeIfAbsent(taskId, k -> new ArrayList<>(1)).add(waiter);
+                return () -> cancel(taskId, waiter);
+            }
+        }
+        waiter.accept(done);
+        return () -> {
+        };
+    }
+
+    /**
+     * 当前挂起的等待者数量
+     */
+    public synchronized int waiting() {
+        int count = 0;
+        for (List<Consumer<DTOs.CallbackPayload>> list : waiters.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+
+    private synchronized void cancel(String taskId, Consumer<DTOs.CallbackPayload> waiter) {
+        List<Consumer<DTOs.CallbackPayload>> list = waiters.get(taskId);
+        if (list == null) return;
+        list.remove(waiter);
+        if (list.isEmpty()) waiters.remove(taskId);
+    }
+}
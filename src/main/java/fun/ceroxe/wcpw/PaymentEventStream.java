@@ -0,0 +1,115 @@
+package fun.ceroxe.wcpw;
+
+import com.google.gson.Gson;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.sse.ServerSentEventConnection;
+import io.undertow.server.handlers.sse.ServerSentEventConnectionCallback;
+import io.undertow.server.handlers.sse.ServerSentEventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 支付结果推送 (Server-Sent Events)
+ * 业务后端保持一条长连接订阅，订单结束时立即收到带签名的 payment 事件，不再为每笔结果单独建连、握手。
+ * <p>
+ * 事件 ID 为 "{启动标识}-{序号}"，最近 events.history 条事件保留在内存中：
+ * 断线重连时浏览器 / 客户端带上 Last-Event-ID，补发其后的事件；ID 来自上一次运行 (服务重启过) 时补发全部保留的事件。
+ * 超出保留范围的事件无法补发，业务系统可通过订单状态接口对账。
+ */
+public class PaymentEventStream implements ServerSentEventConnectionCallback {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentEventStream.class);
+    private static final Gson gson = new Gson();
+    private static final String EVENT_TYPE = "payment";
+
+    private record Event(long seq, String id, String data) {
+    }
+
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final int capacity;
+    private final long keepAliveMs;
+    private final ArrayDeque<Event> history = new ArrayDeque<>();
+    // 补发完成后才加入：补发与实时推送在同一把锁下进行，事件不重复、不乱序
+    private final Set<ServerSentEventConnection> live = ConcurrentHashMap.newKeySet();
+    private ServerSentEventHandler handler;
+    private long sequence;
+
+    public PaymentEventStream(int capacity, long keepAliveMs) {
+        this.capacity = capacity;
+        this.keepAliveMs = keepAliveMs;
+    }
+
+    /**
+     * 接受订阅的处理器 (鉴权由调用方完成)
+     */
+    public synchronized HttpHandler handler() {
+        // 首次使用时创建：在构造器中把 this 交给处理器会在构造完成前泄露引用
+        if (handler == null) handler = new ServerSentEventHandler(this);
+        return handler;
+    }
+
+    public int subscribers() {
+        return live.size();
+    }
+
+    /**
+     * 签名并推送订单结果 (在调用线程上编码，写出由各连接的 IO 线程完成)
+     */
+    public synchronized void publish(DTOs.CallbackPayload payload) {
+        Map<String, String> params = CallbackClient.callbackParams(payload);
+        DTOs.PaymentEvent signed = new DTOs.PaymentEvent(params.get("oid"), params.get("money"), params.get("status"),
+                params.get("timestamp"), CallbackClient.sign(params));
+        sequence++;
+        Event event = new Event(sequence, bootId + "-" + sequence, gson.toJson(signed));
+        history.addLast(event);
+        if (history.size() > capacity) history.removeFirst();
+
+        for (ServerSentEventConnection connection : live) {
+            send(connection, event);
+        }
+    }
+
+    @Override
+    public synchronized void connected(ServerSentEventConnection connection, String lastEventId) {
+        connection.setKeepAliveTime(keepAliveMs);
+        long after = resumeAfter(lastEventId);
+        int replayed = 0;
+        for (Event event : history) {
+            if (event.seq() > after) {
+                send(connection, event);
+                replayed++;
+            }
+        }
+        live.add(connection);
+        connection.addCloseTask(live::remove);
+        logger.info("📡 [SSE] 订阅建立 | Last-Event-ID: {} | 补发 {} 条 | 当前订阅 {}", lastEventId, replayed, live.size());
+    }
+
+    /**
+     * 需要补发的起点序号：新订阅不补发；本次运行的 ID 补发其后的事件；无法识别的 ID 补发全部保留的事件
+     */
+    private long resumeAfter(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) return sequence;
+        int dash = lastEventId.lastIndexOf('-');
+        if (dash > 0 && lastEventId.substring(0, dash).equals(bootId)) {
+            try {
+                long seq = Long.parseLong(lastEventId.substring(dash + 1));
+                Event oldest = history.peekFirst();
+                if (oldest != null && seq < oldest.seq() - 1) {
+                    logger.warn("⚠️ [SSE] Last-Event-ID {} 已超出保留范围，{} 条事件无法补发", lastEventId, oldest.seq() - 1 - seq);
+                }
+                return seq;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return 0;
+    }
+
+    private static void send(ServerSentEventConnection connection, Event event) {
+        connection.send(event.data(), EVENT_TYPE, event.id(), null);
+    }
+}
@@ -0,0 +1,30 @@
+package fun.ceroxe.wcpw;
+
+/**
+ * 到账检测器：对订单簿中的待支付订单执行检测，命中或超时后通过监听器回报
+ * 生产实现为 {@link WeChatMonitorService} (截图 + OCR)，压测工具以合成到账替代。
+ */
+public interface PaymentMonitor {
+
+    @FunctionalInterface
+    interface ResultListener {
+        void onResolved(OrderBook.Order order, boolean success);
+    }
+
+    /**
+     * 是否已可以开始检测 (OCR 引擎加载并预热完毕)，用于就绪探针
+     */
+    default boolean isReady() {
+        return true;
+    }
+
+    /**
+     * 新订单登记后调用
+     */
+    void onOrderAdmitted(String taskId);
+
+    /**
+     * 阻塞执行检测，订单簿清空后返回
+     */
+    void watch(OrderBook book, ResultListener listener);
+}
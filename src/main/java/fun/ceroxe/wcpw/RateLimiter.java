@@ -0,0 +1,105 @@
+package fun.ceroxe.wcpw;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 按来源 IP 的无锁令牌桶限流器
+ * 每个 IP 只保存一个 "理论到达时间" (GCRA 算法，与令牌桶等价)，放行判断是一次 CAS，可以直接在 IO 线程上执行。
+ * 长期空闲 (令牌已补满) 的 IP 会被定期清理，扫描洪水不会让表无限增长。
+ */
+public class RateLimiter {
+    private static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    private final long intervalNanos;  // 每个令牌的补充间隔
+    private final long burstNanos;     // 桶容量对应的时间窗
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<InetAddress, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepAt = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst         桶容量 (允许的瞬时突发请求数)
+     * @throws IllegalArgumentException 速率或桶容量不是正数
+     */
+    public RateLimiter(double ratePerSecond, int burst) {
+        this(ratePerSecond, burst, System::nanoTime);
+    }
+
+    RateLimiter(double ratePerSecond, int burst, LongSupplier clock) {
+        if (!(ratePerSecond > 0) || burst <= 0) {
+            throw new IllegalArgumentException("限流参数必须为正数: rate=" + ratePerSecond + ", burst=" + burst);
+        }
+        // 速率过低时间隔按 1 天封顶，避免 interval * burst 溢出
+        this.intervalNanos = Math.max(1, (long) Math.min(1_000_000_000L / ratePerSecond, 86_400_000_000_000d));
+        this.burstNanos = intervalNanos * burst;
+        this.clock = clock;
+        this.nextSweepAt.set(clock.getAsLong());
+    }
+
+    public static RateLimiter fromConfig() {
+        return fromConfig("security", 5, 20);
+    }
+
+    /**
+     * 读取 {prefix}.rate.per.second / {prefix}.rate.burst
+     */
+    public static RateLimiter fromConfig(String prefix, int defaultRate, int defaultBurst) {
+        return new RateLimiter(AppConfig.getInt(prefix + ".rate.per.second", defaultRate),
+                AppConfig.getInt(prefix + ".rate.burst", defaultBurst));
+    }
+
+    /**
+     * 尝试为该 IP 取一个令牌
+     */
+    public boolean tryAcquire(InetAddress ip) {
+        long now = clock.getAsLong();
+        AtomicLong bucket = buckets.get(ip);
+        if (bucket == null) {
+            sweepIfNeeded(now);
+            bucket = buckets.computeIfAbsent(ip, k -> new AtomicLong(now));
+        }
+
+        while (true) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (bucket.compareAndSet(tat, next)) return true;
+        }
+    }
+
+    /**
+     * 该 IP 下一个令牌可用前需等待的秒数 (用于 Retry-After)
+     */
+    public int retryAfterSeconds(InetAddress ip) {
+        AtomicLong bucket = buckets.get(ip);
+        if (bucket == null) return 0;
+        long wait = bucket.get() - burstNanos + intervalNanos - clock.getAsLong();
+        return wait <= 0 ? 0 : (int) ((wait + 999_999_999L) / 1_000_000_000L);
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    int trackedAddresses() {
+        return buckets.size();
+    }
+
+    /**
+     * 表较大时每秒最多清理一次令牌已补满的 IP
+     */
+    private void sweepIfNeeded(long now) {
+        if (buckets.size() < SWEEP_THRESHOLD) return;
+        long due = nextSweepAt.get();
+        if (now - due < 0 || !nextSweepAt.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) return;
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+}
@@ -0,0 +1,188 @@
+package fun.ceroxe.wcpw;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * 录制回放：把 {@link FrameRecorder} 录制的画面按原始位置依次绘制到一块虚拟屏幕上，截图时从虚拟屏幕裁剪
+ * 录制文件只读映射到内存，打开时建立帧索引，回放过程不产生文件 IO。
+ * <ul>
+ *     <li>speed &gt; 0：按录制时间轴播放，1 为实时，2 为两倍速；播放完毕后停在最后一帧</li>
+ *     <li>speed = 0：手动步进，由调用方 {@link #advance()} 逐帧推进，用于离线全速回放</li>
+ * </ul>
+ * 虚拟屏幕上只有录制到的区域是真实画面 (如锁定卡片后只录制了卡片)，其余区域保留之前绘制的内容。
+ */
+public class ReplayFrameSource implements FrameSource {
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int[] offsets;
+    private final Dimension screenSize;
+    private final BufferedImage canvas;
+    private final int[] canvasPixels;
+    private final double speed;
+    private final Inflater inflater = new Inflater();
+    private byte[] rgb = new byte[0];
+    private int next;
+    private long startedAt = -1;
+
+    private ReplayFrameSource(FileChannel channel, MappedByteBuffer map, int[] offsets, Dimension screenSize, double speed) {
+        this.channel = channel;
+        this.map = map;
+        this.offsets = offsets;
+        this.screenSize = screenSize;
+        this.speed = speed;
+        this.canvas = new BufferedImage(screenSize.width, screenSize.height, BufferedImage.TYPE_INT_RGB);
+        this.canvasPixels = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * 打开录制文件并建立帧索引 (末尾不完整的帧忽略)
+     *
+     * @param speed 播放倍速，0 表示手动步进
+     */
+    public static ReplayFrameSource open(Path file, double speed) throws IOException {
+        FileChannel channel = FileChannel.open(file, READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("录制文件超过 2GB，请分段录制: " + file);
+            if (size < FrameRecorder.FILE_HEADER_SIZE) throw new IOException("录制文件为空: " + file);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (map.getInt(0) != FrameRecorder.MAGIC || map.getInt(4) != FrameRecorder.VERSION) {
+                throw new IOException("不是截图录制文件: " + file);
+            }
+            Dimension screen = new Dimension(map.getInt(8), map.getInt(12));
+
+            int[] offsets = new int[64];
+            int count = 0;
+            int pos = FrameRecorder.FILE_HEADER_SIZE;
+            while (pos + FrameRecorder.FRAME_HEADER_SIZE <= size) {
+                int length = map.getInt(pos + 24);
+                if (length < 0 || pos + FrameRecorder.FRAME_HEADER_SIZE + (long) length > size) break;
+                if (count == offsets.length) offsets = Arrays.copyOf(offsets, count * 2);
+                offsets[count++] = pos;
+                pos += FrameRecorder.FRAME_HEADER_SIZE + length;
+            }
+            return new ReplayFrameSource(channel, map, Arrays.copyOf(offsets, count), screen, speed);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Dimension screenSize() {
+        return screenSize;
+    }
+
+    public int frameCount() {
+        return offsets.length;
+    }
+
+    /**
+     * 第 index 帧的录制时间 (ms)
+     */
+    public long timestamp(int index) {
+        return map.getLong(offsets[index]);
+    }
+
+    /**
+     * 已绘制到虚拟屏幕的帧数
+     */
+    public synchronized int position() {
+        return next;
+    }
+
+    public synchronized boolean exhausted() {
+        return next >= offsets.length;
+    }
+
+    /**
+     * 绘制下一帧，已播放完毕返回 false
+     */
+    public synchronized boolean advance() {
+        if (next >= offsets.length) return false;
+        paint(offsets[next++]);
+        return true;
+    }
+
+    @Override
+    public synchronized BufferedImage capture(Rectangle area) {
+        if (speed > 0) catchUp();
+        Rectangle clip = area.intersection(new Rectangle(screenSize));
+        BufferedImage image = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_RGB);
+        if (!clip.isEmpty()) {
+            int[] dst = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            for (int y = 0; y < clip.height; y++) {
+                System.arraycopy(canvasPixels, (clip.y + y) * screenSize.width + clip.x,
+                        dst, (clip.y - area.y + y) * area.width + (clip.x - area.x), clip.width);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 按倍速折算的录制时间轴，绘制所有已 "发生" 的帧
+     */
+    private void catchUp() {
+        if (offsets.length == 0) return;
+        long now = System.currentTimeMillis();
+        if (startedAt < 0) startedAt = now;
+        long elapsed = (long) ((now - startedAt) * speed);
+        long origin = timestamp(0);
+        while (next < offsets.length && timestamp(next) - origin <= elapsed) {
+            paint(offsets[next++]);
+        }
+    }
+
+    private void paint(int offset) {
+        int x = map.getInt(offset + 8);
+        int y = map.getInt(offset + 12);
+        int w = map.getInt(offset + 16);
+        int h = map.getInt(offset + 20);
+        int length = map.getInt(offset + 24);
+
+        int size = w * h * 3;
+        if (rgb.length < size) rgb = new byte[size];
+        inflater.reset();
+        inflater.setInput(map.slice(offset + FrameRecorder.FRAME_HEADER_SIZE, length));
+        try {
+            int n = 0;
+            while (n < size && !inflater.finished()) {
+                int read = inflater.inflate(rgb, n, size - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += read;
+            }
+            if (n < size) throw new IllegalStateException("录制帧数据不完整 @" + offset);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("录制帧数据损坏 @" + offset, e);
+        }
+
+        // 裁剪到虚拟屏幕范围内
+        int x0 = Math.max(0, x), y0 = Math.max(0, y);
+        int x1 = Math.min(screenSize.width, x + w), y1 = Math.min(screenSize.height, y + h);
+        for (int py = y0; py < y1; py++) {
+            int src = ((py - y) * w + (x0 - x)) * 3;
+            int dst = py * screenSize.width + x0;
+            for (int px = x0; px < x1; px++) {
+                canvasPixels[dst++] = (rgb[src] & 0xFF) << 16 | (rgb[src + 1] & 0xFF) << 8 | (rgb[src + 2] & 0xFF);
+                src += 3;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
@@ -0,0 +1,28 @@
+package fun.ceroxe.wcpw;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * 基于 java.awt.Robot 的实时截屏 (需要桌面 / VNC 显示)
+ */
+public class RobotFrameSource implements FrameSource {
+    private final Robot robot;
+    private final Dimension screenSize;
+
+    public RobotFrameSource() throws AWTException {
+        System.setProperty("java.awt.headless", "false");
+        this.robot = new Robot();
+        this.screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+    }
+
+    @Override
+    public Dimension screenSize() {
+        return screenSize;
+    }
+
+    @Override
+    public BufferedImage capture(Rectangle area) {
+        return robot.createScreenCapture(area);
+    }
+}
@@ -0,0 +1,210 @@
+package fun.ceroxe.wcpw;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应扫描调度器
+ * 根据实时信号决定下一次截图时间：新订单后短时高频 (burst)，检测到画面变化后保持较快采样，
+ * 画面静止时逐步退避；新订单到达会立即唤醒等待中的监控循环。
+ * 同时按任务统计实际采样频率与检测延迟。
+ */
+public class ScanScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(ScanScheduler.class);
+
+    /**
+     * 调度策略，来自 config.properties 的 scan.* 配置
+     */
+    public record Policy(
+            long burstIntervalMs,
+            long burstDurationMs,
+            long motionIntervalMs,
+            long motionHoldMs,
+            long idleMinIntervalMs,
+            long idleMaxIntervalMs,
+            double idleBackoff,
+            long heartbeatIntervalMs
+    ) {
+        public static Policy fromConfig() {
+            return new Policy(
+                    AppConfig.getInt("scan.burst.interval.ms", 150),
+                    AppConfig.getInt("scan.burst.duration.ms", 10000),
+                    AppConfig.getInt("scan.motion.interval.ms", 200),
+                    AppConfig.getInt("scan.motion.hold.ms", 3000),
+                    AppConfig.getInt("scan.idle.min.interval.ms", 500),
+                    AppConfig.getInt("scan.idle.max.interval.ms", 2000),
+                    Math.max(1.0, AppConfig.getDouble("scan.idle.backoff", 1.5)),
+                    AppConfig.getInt("scan.heartbeat.interval.ms", 20000)
+            );
+        }
+    }
+
+    /**
+     * 单个任务的扫描统计
+     *
+     * @param detectLatencyMs 命中帧截图到撮合完成的耗时，超时任务为 -1
+     * @param intervalMs      命中时的采样间隔 (通知实际出现时间最多早于截图这么久)
+     */
+    public record TaskStats(String taskId, long elapsedMs, long captures, long scans,
+                            double capturesPerSecond, long detectLatencyMs, long intervalMs) {
+    }
+
+    private record TaskStart(long startedAt, long captures, long scans) {
+    }
+
+    private final Policy policy;
+    private final Metrics.Histogram detectLatency =
+            Metrics.histogram("wcpw_detect_latency_seconds", "Matched frame capture to order match");
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUp = lock.newCondition();
+    private final Map<String, TaskStart> tasks = new ConcurrentHashMap<>();
+    private final AtomicLong captureCount = new AtomicLong();
+    private final AtomicLong scanCount = new AtomicLong();
+
+    private volatile long burstUntil = 0;
+    private volatile long lastMotionAt = 0;
+    private volatile long lastScanAt = 0;
+    private long lastCaptureAt = 0;
+    private long idleIntervalMs;
+    private long currentIntervalMs;
+    private boolean woken = false;
+
+    public ScanScheduler(Policy policy) {
+        this.policy = policy;
+        this.idleIntervalMs = policy.idleMinIntervalMs();
+        this.currentIntervalMs = policy.idleMinIntervalMs();
+    }
+
+    /**
+     * 新订单登记：进入高频采样并唤醒监控循环
+     */
+    public void onOrderAdmitted(String taskId) {
+        long now = System.currentTimeMillis();
+        tasks.put(taskId, new TaskStart(now, captureCount.get(), scanCount.get()));
+        burstUntil = now + policy.burstDurationMs();
+        lock.lock();
+        try {
+            idleIntervalMs = policy.idleMinIntervalMs();
+            woken = true;
+            wakeUp.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 监控循环重新启动时清空节奏状态
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            lastScanAt = 0;
+            lastCaptureAt = 0;
+            lastMotionAt = 0;
+            idleIntervalMs = policy.idleMinIntervalMs();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isHeartbeatDue(long now) {
+        return (now - lastScanAt) > policy.heartbeatIntervalMs();
+    }
+
+    /**
+     * 截图阶段：记录一次截图，作为下一次截图的计时起点
+     */
+    public void onCaptured(long capturedAt) {
+        captureCount.incrementAndGet();
+        lock.lock();
+        try {
+            lastCaptureAt = capturedAt;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 检测阶段：记录一帧的判定结果
+     *
+     * @param motion  画面是否变化
+     * @param scanned 是否送去 OCR
+     */
+    public void onFrame(long capturedAt, boolean motion, boolean scanned) {
+        if (scanned) {
+            scanCount.incrementAndGet();
+            lastScanAt = capturedAt;
+        }
+        lock.lock();
+        try {
+            if (motion) {
+                lastMotionAt = capturedAt;
+                idleIntervalMs = policy.idleMinIntervalMs();
+            } else {
+                idleIntervalMs = Math.min(policy.idleMaxIntervalMs(), (long) (idleIntervalMs * policy.idleBackoff()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 阻塞到下一次截图时间，或被新订单提前唤醒
+     */
+    public void awaitNextCapture() throws InterruptedException {
+        lock.lock();
+        try {
+            long interval = nextInterval(System.currentTimeMillis());
+            currentIntervalMs = interval;
+            long deadline = lastCaptureAt + interval;
+            long waitMs;
+            while (!woken && (waitMs = deadline - System.currentTimeMillis()) > 0) {
+                wakeUp.await(waitMs, TimeUnit.MILLISECONDS);
+            }
+            woken = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 任务结束，返回并输出其统计
+     */
+    public TaskStats finish(String taskId, long matchedFrameAt) {
+        TaskStart start = tasks.remove(taskId);
+        if (start == null) return null;
+
+        long now = System.currentTimeMillis();
+        long elapsed = Math.max(1, now - start.startedAt());
+        long captures = captureCount.get() - start.captures();
+        long scans = scanCount.get() - start.scans();
+        long latency = matchedFrameAt > 0 ? now - matchedFrameAt : -1;
+        if (latency >= 0) detectLatency.observeMillis(latency);
+        long interval;
+        lock.lock();
+        try {
+            interval = currentIntervalMs;
+        } finally {
+            lock.unlock();
+        }
+        TaskStats stats = new TaskStats(taskId, elapsed, captures, scans, captures * 1000.0 / elapsed, latency, interval);
+
+        String latencyMsg = latency >= 0 ? latency + "ms (采样间隔 " + interval + "ms)" : "-";
+        logger.info("[{}] 📊 截图 {} 帧 / OCR {} 次 | 采样 {} 帧/s | 检测延迟 {}",
+                taskId, captures, scans, String.format("%.2f", stats.capturesPerSecond()), latencyMsg);
+        return stats;
+    }
+
+    private long nextInterval(long now) {
+        if (now < burstUntil) return policy.burstIntervalMs();
+        if (now - lastMotionAt < policy.motionHoldMs()) return policy.motionIntervalMs();
+        return idleIntervalMs;
+    }
+}
@@ -0,0 +1,44 @@
+package fun.ceroxe.wcpw;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流水线单个阶段的耗时累计 (次数 / 总耗时 / 最大耗时)
+ * 每次记录同时写入对应的指标直方图；reset() 只清空本轮统计，不影响累计指标。
+ */
+public class StageTimer {
+    private final String name;
+    private final Metrics.Histogram histogram;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public StageTimer(String name, Metrics.Histogram histogram) {
+        this.name = name;
+        this.histogram = histogram;
+    }
+
+    public void record(long nanos) {
+        histogram.observeNanos(nanos);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public void reset() {
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    @Override
+    public String toString() {
+        long n = count.get();
+        double avgMs = n == 0 ? 0 : totalNanos.get() / 1e6 / n;
+        return String.format("%s %d次 平均%.2fms 最大%.2fms", name, n, avgMs, maxNanos.get() / 1e6);
+    }
+}
@@ -0,0 +1,139 @@
+package fun.ceroxe.wcpw;
+
+import io.undertow.Undertow;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.openssl.PEMKeyPair;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TLS 证书管理
+ * 从 PEM 证书 / 私钥构建 SSLContext，并调优会话缓存与会话票据，让频繁重连的业务后端可以恢复会话、跳过完整握手。
+ * 定期检查 PEM 文件的修改时间 (跟随符号链接，兼容 certbot 的 live 目录)，变更后构建新的 SSLContext 并原地替换到 HTTPS 监听器，
+ * 新连接立即使用新证书，已建立的连接不受影响，无需重启服务与 OCR 引擎。
+ */
+public class TlsContextManager {
+    private static final Logger logger = LoggerFactory.getLogger(TlsContextManager.class);
+
+    private final Path certPath;
+    private final Path keyPath;
+    private final int sessionCacheSize;
+    private final int sessionTimeoutSeconds;
+    private FileTime certModified;
+    private FileTime keyModified;
+
+    public TlsContextManager(Path certPath, Path keyPath) {
+        this.certPath = certPath;
+        this.keyPath = keyPath;
+        this.sessionCacheSize = AppConfig.getInt("ssl.session.cache.size", 4096);
+        this.sessionTimeoutSeconds = AppConfig.getInt("ssl.session.timeout.seconds", 86400);
+        // TLS 1.3 无状态会话票据 (JDK 13+ 默认开启，显式声明以免被环境关闭)
+        if (System.getProperty("jdk.tls.server.enableSessionTicketExtension") == null) {
+            System.setProperty("jdk.tls.server.enableSessionTicketExtension", "true");
+        }
+    }
+
+    /**
+     * 读取 PEM 文件并构建 SSLContext
+     */
+    public synchronized SSLContext load() throws Exception {
+        FileTime certTime = Files.getLastModifiedTime(certPath);
+        FileTime keyTime = Files.getLastModifiedTime(keyPath);
+        SSLContext context = createSSLContext(keyPath, certPath);
+
+        SSLSessionContext sessions = context.getServerSessionContext();
+        sessions.setSessionCacheSize(sessionCacheSize);
+        sessions.setSessionTimeout(sessionTimeoutSeconds);
+
+        certModified = certTime;
+        keyModified = keyTime;
+        return context;
+    }
+
+    /**
+     * 周期检查证书变更，变更后替换 server 上所有 HTTPS 监听器的 SSLContext
+     */
+    public void watch(Undertow server) {
+        long interval = AppConfig.getInt("ssl.reload.interval.seconds", 60);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "wcpw-tls-reload");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> reloadIfChanged(server), interval, interval, TimeUnit.SECONDS);
+    }
+
+    private synchronized void reloadIfChanged(Undertow server) {
+        try {
+            if (Files.getLastModifiedTime(certPath).equals(certModified)
+                    && Files.getLastModifiedTime(keyPath).equals(keyModified)) {
+                return;
+            }
+            SSLContext context = load();
+            for (Undertow.ListenerInfo listener : server.getListenerInfo()) {
+                if ("https".equals(listener.getProtcol())) listener.setSslContext(context);
+            }
+            logger.info("🔐 证书已重新加载: {}", certPath);
+        } catch (Exception e) {
+            // 证书续期时两个文件可能尚未写完，下个周期重试
+            logger.error("❌ 证书重新加载失败，继续使用旧证书: {}", e.getMessage());
+        }
+    }
+
+    private static SSLContext createSSLContext(Path keyPath, Path certPath) throws Exception {
+        PrivateKey privateKey = null;
+        try (InputStream is = Files.newInputStream(keyPath);
+             InputStreamReader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+             PEMParser pemParser = new PEMParser(reader)) {
+            Object object = pemParser.readObject();
+            JcaPEMKeyConverter converter = new JcaPEMKeyConverter().setProvider("BC");
+            if (object instanceof PEMKeyPair) {
+                privateKey = converter.getPrivateKey(((PEMKeyPair) object).getPrivateKeyInfo());
+            } else if (object instanceof PrivateKeyInfo) {
+                privateKey = converter.getPrivateKey((PrivateKeyInfo) object);
+            }
+        }
+        List<Certificate> certChain = new ArrayList<>();
+        try (InputStream is = Files.newInputStream(certPath);
+             InputStreamReader reader = new InputStreamReader(is, StandardCharsets.UTF_8);
+             PEMParser pemParser = new PEMParser(reader)) {
+            Object object;
+            JcaX509CertificateConverter converter = new JcaX509CertificateConverter().setProvider("BC");
+            while ((object = pemParser.readObject()) != null) {
+                if (object instanceof X509CertificateHolder) {
+                    certChain.add(converter.getCertificate((X509CertificateHolder) object));
+                }
+            }
+        }
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("alias", privateKey, null, certChain.toArray(new Certificate[0]));
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, null);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), null, null);
+        return context;
+    }
+}
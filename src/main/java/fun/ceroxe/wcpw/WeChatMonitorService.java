@@ -1,23 +1,19 @@
 package fun.ceroxe.wcpw;
 
-import com.benjaminwan.ocrlibrary.OcrResult;
 import com.benjaminwan.ocrlibrary.TextBlock;
-import io.github.mymonstercat.Model;
-import io.github.mymonstercat.ocr.InferenceEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.nio.file.Files;
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-public class WeChatMonitorService {
+public class WeChatMonitorService implements PaymentMonitor, Closeable {
     private static final Logger logger = LoggerFactory.getLogger(WeChatMonitorService.class);
 
     // 【修改1】缩小区域，只覆盖微信弹窗，避开多余干扰
@@ -27,190 +23,399 @@ public class WeChatMonitorService {
     // 【修改2】调高阈值，忽略 VNC 噪点，0.05 代表 5% 的像素变化才触发
     private static final double MOTION_THRESHOLD = 0.05;
 
-    // 【优化参数 2】强制扫描间隔 (安全阀)
-    // 即使画面完全静止，每隔 5000ms (5秒) 也会强制执行一次 OCR，防止任何潜在的漏判
-    private static final long FORCE_SCAN_INTERVAL_MS = 20000;
+    // 脏区域分块边长，以及脏区域超过 ROI 面积多少比例时直接整幅识别
+    private static final int TILE_SIZE = 32;
+    private static final double FULL_SCAN_AREA_RATIO = 0.6;
+
+    private static final String WATCH_TAG = "Watcher";
+
+    private final OcrRunner ocr;
+    private final OcrFrameWriter frameWriter = new OcrFrameWriter();
+    private final NotificationParser parser = new NotificationParser();
+    private final MotionDetector motionDetector = new MotionDetector(MOTION_THRESHOLD);
+    private final DirtyRegionTracker dirtyTracker = new DirtyRegionTracker(TILE_SIZE);
+    private final CardLocator cardLocator = new CardLocator();
+    // 跨任务保留：同一张卡片、心跳时的静止画面不再重复推理
+    private final OcrResultCache resultCache = new OcrResultCache(AppConfig.getInt("ocr.cache.size", 64));
+    // 采样节奏 + 心跳 (安全阀：即使画面完全静止，也会按 scan.heartbeat.interval.ms 强制执行一次 OCR)
+    private final ScanScheduler scheduler = new ScanScheduler(ScanScheduler.Policy.fromConfig());
+    private final FrameSource frameSource;
+
+    // OCR 阶段写入，检测阶段读取 (未锁定基准时整幅识别)
+    private volatile long baselineSerialNum = -1;
+
+    // 阶段间队列：只保留最新帧；OCR 任务被覆盖时合并识别区域，避免已计入参考帧的变化漏识别
+    private final LatestSlot<CapturedFrame> frameSlot = new LatestSlot<>();
+    private final LatestSlot<ScanJob> jobSlot = new LatestSlot<>(WeChatMonitorService::mergeJobs);
+    private final StageTimer captureTimer = new StageTimer("截图",
+            Metrics.histogram("wcpw_capture_seconds", "Screen capture time"));
+    private final StageTimer detectTimer = new StageTimer("检测",
+            Metrics.histogram("wcpw_motion_check_seconds", "Motion and dirty-region check time"));
+    private final StageTimer queueTimer = new StageTimer("排队",
+            Metrics.histogram("wcpw_ocr_queue_seconds", "Time a scan job waits for the OCR stage"));
+    private final StageTimer ocrTimer = new StageTimer("OCR",
+            Metrics.histogram("wcpw_ocr_seconds", "OCR time including frame write"));
+    private final Metrics.Histogram inferenceHistogram =
+            Metrics.histogram("wcpw_ocr_inference_seconds", "OCR engine inference time");
+    private final Metrics.Counter framesSkipped =
+            Metrics.counter("wcpw_frames_total", "Captured frames by detect outcome", "result=\"skipped\"");
+    private final Metrics.Counter framesScanned =
+            Metrics.counter("wcpw_frames_total", "Captured frames by detect outcome", "result=\"scanned\"");
+    private volatile boolean running = false;
+
+    private record OcrPass(OcrResultCache.ScanResult result, long cost, long writeCost, OcrRunner.Timing timing, boolean cached) {
+    }
 
-    private final InferenceEngine engine;
-    private final Robot robot;
-    private final Dimension screenSize;
+    private record CapturedFrame(int seq, BufferedImage image, Rectangle area, boolean card, long capturedAt) {
+    }
 
-    private long baselineSerialNum = -1;
-    private BufferedImage lastFrame = null;
-    private long lastScanTime = 0;
+    private record ScanJob(CapturedFrame frame, Rectangle region, boolean heartbeat, int skipCount, long queuedAt) {
+    }
 
-    public WeChatMonitorService() {
+    public WeChatMonitorService(FrameSource frameSource) {
+        this.frameSource = frameSource;
         try {
-            System.setProperty("java.awt.headless", "false");
-            this.robot = new Robot();
-            this.screenSize = Toolkit.getDefaultToolkit().getScreenSize();
             // 这里的日志现在会显得很干净
-            this.engine = InferenceEngine.getInstance(Model.ONNX_PPOCR_V3);
+            this.ocr = new OcrRunner();
+            if (!"false".equals(AppConfig.get("ocr.warmup"))) ocr.warmUp(frameWriter);
             logger.info("✅ OCR 引擎初始化完毕 (高性能+心跳兜底模式)");
+            if (!(frameSource instanceof RobotFrameSource)) {
+                logger.info("🎞️ 截图来源: {}", frameSource.getClass().getSimpleName());
+            }
         } catch (Exception e) {
             throw new RuntimeException("OCR Init Failed", e);
         }
+        Metrics.counter("wcpw_ocr_cache_total", "OCR result cache lookups", "result=\"hit\"", resultCache::hits);
+        Metrics.counter("wcpw_ocr_cache_total", "OCR result cache lookups", "result=\"miss\"", resultCache::misses);
+        Metrics.counter("wcpw_frames_dropped_total", "Frames replaced before the detect stage took them", "", frameSlot::dropped);
+        Metrics.counter("wcpw_scan_jobs_merged_total", "Scan jobs merged while the OCR stage was busy", "", jobSlot::dropped);
     }
 
-    public boolean monitorPayment(String taskId, double targetAmount, long timeoutSeconds) {
-        long endTime = System.currentTimeMillis() + (timeoutSeconds * 1000L);
-        String amountStr = String.format("%.2f", targetAmount);
-        String amountNoDot = amountStr.replace(".", "");
+    /**
+     * 新订单登记后调用：提高采样频率并唤醒等待中的监控循环
+     */
+    @Override
+    public void onOrderAdmitted(String taskId) {
+        scheduler.onOrderAdmitted(taskId);
+    }
 
-        logger.info("[{}] 👁️ 监控启动 | 目标金额: ¥{}", taskId, amountStr);
+    /**
+     * 共享监控流水线：一条截图/OCR 流水线同时服务订单簿中的所有待支付订单
+     * 截图阶段运行在调用线程上，检测与 OCR 阶段各占一条线程，阶段间只传递最新帧，
+     * OCR 再慢也不影响截图节奏。订单簿清空后返回。
+     */
+    @Override
+    public void watch(OrderBook book, ResultListener listener) {
+        logger.info("[{}] 👁️ 监控启动 | 待支付订单: {}", WATCH_TAG, book.size());
 
         // 重置状态
         baselineSerialNum = -1;
-        lastFrame = null;
-        lastScanTime = 0;
+        cardLocator.invalidate("监控重启");
+        scheduler.reset();
+        frameSlot.clear();
+        jobSlot.clear();
+        long droppedFramesBefore = frameSlot.dropped();
+        long droppedJobsBefore = jobSlot.dropped();
+        for (StageTimer timer : List.of(captureTimer, detectTimer, queueTimer, ocrTimer)) timer.reset();
+
+        running = true;
+        Thread detectThread = Thread.ofPlatform().name("wcpw-detect").start(this::detectStage);
+        Thread ocrThread = Thread.ofPlatform().name("wcpw-ocr").start(() -> ocrStage(book, listener));
+        try {
+            captureStage(book, listener);
+        } finally {
+            running = false;
+            try {
+                detectThread.join();
+                ocrThread.join();
+            } catch (InterruptedException e) {
+                detectThread.interrupt();
+                ocrThread.interrupt();
+                Thread.currentThread().interrupt();
+            }
+            logger.info("[{}] 📈 流水线统计: {} | {} | {} | {} | 丢弃帧 {} | 合并任务 {} | OCR 缓存 命中{}/未命中{}", WATCH_TAG,
+                    captureTimer, detectTimer, queueTimer, ocrTimer,
+                    frameSlot.dropped() - droppedFramesBefore, jobSlot.dropped() - droppedJobsBefore,
+                    resultCache.hits(), resultCache.misses());
+        }
 
-        int scanCount = 0;
-        int skipCount = 0;
+        logger.info("[{}] 💤 订单簿已清空，监控暂停", WATCH_TAG);
+    }
 
-        while (System.currentTimeMillis() < endTime) {
-            Path tempFile = null;
+    /**
+     * 截图阶段：按调度节奏截图，处理订单超时
+     */
+    private void captureStage(OrderBook book, ResultListener listener) {
+        int seq = 0;
+        while (true) {
             try {
-                if (Thread.currentThread().isInterrupted()) return false;
-                scanCount++;
+                if (Thread.currentThread().isInterrupted()) return;
+                scheduler.awaitNextCapture();
+
+                for (OrderBook.Order expired : book.expire(System.currentTimeMillis())) {
+                    logger.info("[{}] ⏰ 监控超时", expired.taskId());
+                    scheduler.finish(expired.taskId(), -1);
+                    listener.onResolved(expired, false);
+                }
+                if (book.isEmpty()) return;
+
+                // 内存截图 (已定位到收款卡片时只截卡片)
+                // 心跳扫描截取整幅 ROI：聊天滚动或新卡片出现在别处时，缓存的卡片区域仍显示旧卡片，只能靠整幅识别发现
+                Rectangle cardArea = cardLocator.cachedRegion();
+                if (cardArea != null && scheduler.isHeartbeatDue(System.currentTimeMillis())) cardArea = null;
+                Rectangle captureArea = cardArea != null ? cardArea : roiArea();
+                long t0 = System.nanoTime();
+                BufferedImage image = frameSource.capture(captureArea);
+                long capturedAt = System.currentTimeMillis();
+                captureTimer.record(System.nanoTime() - t0);
+
+                scheduler.onCaptured(capturedAt);
+                frameSlot.offer(new CapturedFrame(++seq, image, captureArea, cardArea != null, capturedAt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("[{}] 截图异常", WATCH_TAG, e);
+            }
+        }
+    }
+
+    /**
+     * 检测阶段：画面变化 / 心跳判定与脏区域计算
+     */
+    private void detectStage() {
+        int skipCount = 0;
+        Rectangle lastArea = null;
+        motionDetector.reset();
+        dirtyTracker.reset();
 
-                // 1. 内存截图
-                BufferedImage currentFrame = captureROI();
-                long now = System.currentTimeMillis();
+        while (running) {
+            try {
+                CapturedFrame frame = frameSlot.poll(200, TimeUnit.MILLISECONDS);
+                if (frame == null) continue;
+                long t0 = System.nanoTime();
+                BufferedImage image = frame.image();
+
+                // 截图范围变化 (卡片定位 / 失效) 时参考帧失去意义
+                if (!frame.area().equals(lastArea)) {
+                    motionDetector.reset();
+                    dirtyTracker.reset();
+                    lastArea = frame.area();
+                }
 
-                // 2. 【核心优化逻辑】
+                // 【核心优化逻辑】
                 // 只有当 (画面变了) 或者 (距离上次扫描超过了强制间隔) 时，才执行 OCR
-                boolean isMotionDetected = (lastFrame == null) || isFrameChanged(lastFrame, currentFrame);
-                boolean isForceScan = (now - lastScanTime) > FORCE_SCAN_INTERVAL_MS;
+                boolean isMotionDetected = motionDetector.isChanged(image);
+                boolean isForceScan = scheduler.isHeartbeatDue(frame.capturedAt());
 
                 if (!isMotionDetected && !isForceScan) {
-                    // 画面静止，且没到强制扫描时间 -> 跳过！
+                    // 画面静止，且没到强制扫描时间 -> 跳过！(调度器逐步拉长采样间隔，省 CPU)
                     skipCount++;
-                    Thread.sleep(500); // 省 CPU
+                    framesSkipped.inc();
+                    scheduler.onFrame(frame.capturedAt(), false, false);
+                    detectTimer.record(System.nanoTime() - t0);
                     continue;
                 }
 
-                // 更新状态
-                lastFrame = currentFrame;
-                lastScanTime = now;
-
-                // 3. 写文件 (仅在需要扫描时发生)
-                tempFile = Files.createTempFile("ocr_", ".png");
-                ImageIO.write(currentFrame, "png", tempFile.toFile());
-
-                // 4. 执行 OCR
-                long t1 = System.currentTimeMillis();
-                OcrResult result = engine.runOcr(tempFile.toAbsolutePath().toString());
-                long cost = System.currentTimeMillis() - t1;
-
-                if (result != null && result.getTextBlocks() != null) {
-                    List<TextBlock> blocks = result.getTextBlocks();
-
-                    // 打印日志 (带上触发原因：Motion 或 Force)
-                    String triggerReason = isForceScan ? "Heartbeat" : "Motion";
-                    printCleanLog(taskId, scanCount, skipCount, cost, triggerReason, blocks);
-
-                    skipCount = 0; // 重置跳过计数
-
-                    long currentSerial = findSerialNumber(blocks);
-                    if (currentSerial != -1) {
-                        if (baselineSerialNum == -1) {
-                            baselineSerialNum = currentSerial;
-                            logger.info("[{}] 🔒 锁定基准单号: #{}", taskId, baselineSerialNum);
-                        } else if (currentSerial > baselineSerialNum) {
-                            logger.info("[{}] ⚡ 发现新订单! #{} -> #{}", taskId, baselineSerialNum, currentSerial);
-                            baselineSerialNum = currentSerial;
-
-                            if (checkAmountMatch(blocks, amountStr, amountNoDot)) {
-                                logger.info("[{}] ✅✅✅ 金额匹配成功: ¥{}", taskId, amountStr);
-                                return true;
-                            } else {
-                                logger.warn("[{}] ⚠️ 金额不符 (期望: ¥{})", taskId, amountStr);
-                            }
-                        }
-                    }
-                }
+                // 只识别变化的分块区域 (心跳 / 未锁定基准时整幅识别)
+                Rectangle region = selectOcrRegion(dirtyTracker.diff(image), image, isForceScan);
 
-                Thread.sleep(800);
+                // 更新状态
+                motionDetector.acceptCurrent();
+                dirtyTracker.acceptCurrent();
+                scheduler.onFrame(frame.capturedAt(), isMotionDetected, true);
+                framesScanned.inc();
+                detectTimer.record(System.nanoTime() - t0);
+
+                jobSlot.offer(new ScanJob(frame, region, isForceScan, skipCount, System.nanoTime()));
+                skipCount = 0;
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.error("[{}] 检测异常", WATCH_TAG, e);
+            }
+        }
+    }
 
+    /**
+     * OCR 阶段：识别最新的待扫描帧并撮合订单
+     */
+    private void ocrStage(OrderBook book, ResultListener listener) {
+        while (running) {
+            try {
+                ScanJob job = jobSlot.poll(200, TimeUnit.MILLISECONDS);
+                if (job == null) continue;
+                queueTimer.record(System.nanoTime() - job.queuedAt());
+                processScanJob(job, book, listener);
+            } catch (InterruptedException e) {
+                return;
             } catch (Exception e) {
-                logger.error("[{}] 监控异常", taskId, e);
-            } finally {
-                if (tempFile != null) try {
-                    Files.deleteIfExists(tempFile);
-                } catch (Exception ignored) {
+                logger.error("[{}] 监控异常", WATCH_TAG, e);
+            }
+        }
+    }
+
+    private void processScanJob(ScanJob job, OrderBook book, ResultListener listener) throws Exception {
+        CapturedFrame frame = job.frame();
+        BufferedImage image = frame.image();
+        Rectangle region = job.region();
+
+        OcrPass pass = recognize(image, region);
+        if (pass.result() == null) return;
+        OcrResultCache.ScanResult result = pass.result();
+
+        // 打印日志 (带上触发原因：Motion 或 Force)
+        String triggerReason = job.heartbeat() ? "Heartbeat" : "Motion";
+        printCleanLog(WATCH_TAG, frame.seq(), job.skipCount(), triggerReason, region, image, pass);
+
+        long currentSerial = result.serial();
+        boolean fullCapture = isFullFrame(region, image);
+        if (!frame.card() && fullCapture) {
+            if (!cardLocator.learn(result.blocks(), frame.area())) cardLocator.invalidate("整幅未定位到卡片");
+        } else if (frame.card() && fullCapture && currentSerial == -1) {
+            cardLocator.invalidate("未找到单号");
+        }
+
+        if (currentSerial == -1) return;
+        if (baselineSerialNum == -1) {
+            baselineSerialNum = currentSerial;
+            logger.info("[{}] 🔒 锁定基准单号: #{}", WATCH_TAG, baselineSerialNum);
+        } else if (currentSerial > baselineSerialNum) {
+            logger.info("[{}] ⚡ 发现新订单! #{} -> #{}", WATCH_TAG, baselineSerialNum, currentSerial);
+            baselineSerialNum = currentSerial;
+
+            boolean matched = matchPendingOrders(book, result, listener, frame.capturedAt());
+            if (!matched && (frame.card() || !fullCapture)) {
+                // 局部重绘可能只覆盖了单号 (如连续同金额到账)，或卡片已移动，
+                // 金额不在本次识别范围内 -> 重新截取整幅 ROI 复核并重新定位卡片
+                Rectangle roiArea = roiArea();
+                BufferedImage roiFrame = frame.card() ? frameSource.capture(roiArea) : image;
+                Rectangle full = new Rectangle(0, 0, roiFrame.getWidth(), roiFrame.getHeight());
+                OcrPass fullPass = recognize(roiFrame, full);
+                printCleanLog(WATCH_TAG, frame.seq(), 0, "Escalate", full, roiFrame, fullPass);
+                if (fullPass.result() != null) {
+                    matched = matchPendingOrders(book, fullPass.result(), listener, frame.capturedAt());
+                    if (!cardLocator.learn(fullPass.result().blocks(), roiArea)) cardLocator.invalidate("复核未定位到卡片");
                 }
             }
+            if (!matched) {
+                String expected = book.snapshot().stream()
+                        .map(o -> "¥" + o.amountText())
+                        .collect(Collectors.joining(", "));
+                logger.warn("[{}] ⚠️ 金额不符 (待支付: {})", WATCH_TAG, expected);
+            }
         }
+    }
 
-        logger.info("[{}] ⏰ 监控超时", taskId);
-        return false;
+    /**
+     * 未被 OCR 取走的任务被新任务覆盖时：同一截图范围内合并两次的变化区域，
+     * 在更新的帧上一起识别；截图范围不同则整幅识别
+     */
+    private static ScanJob mergeJobs(ScanJob older, ScanJob newer) {
+        BufferedImage image = newer.frame().image();
+        Rectangle region = older.frame().area().equals(newer.frame().area())
+                ? older.region().union(newer.region())
+                : new Rectangle(0, 0, image.getWidth(), image.getHeight());
+        return new ScanJob(newer.frame(), region, older.heartbeat() || newer.heartbeat(),
+                older.skipCount() + newer.skipCount(), older.queuedAt());
     }
 
     /**
-     * 网格采样比对，性能极高
+     * 用一笔新到账的通知撮合所有待支付订单，按截止时间优先
+     *
+     * @param capturedAt 出现新单号的那一帧的截图时间，用于统计检测延迟
+     * @return 是否有订单匹配成功
      */
-    private boolean isFrameChanged(BufferedImage imgA, BufferedImage imgB) {
-        if (imgA.getWidth() != imgB.getWidth() || imgA.getHeight() != imgB.getHeight()) return true;
-
-        int width = imgA.getWidth();
-        int height = imgA.getHeight();
-        long diffPixels = 0;
-        long totalSampled = 0;
-        int step = 4; // 采样步长
-
-        for (int y = 0; y < height; y += step) {
-            for (int x = 0; x < width; x += step) {
-                totalSampled++;
-                if (imgA.getRGB(x, y) != imgB.getRGB(x, y)) {
-                    diffPixels++;
+    private boolean matchPendingOrders(OrderBook book, OcrResultCache.ScanResult result, ResultListener listener, long capturedAt) {
+        for (OrderBook.Order order : book.snapshot()) {
+            if (result.parsed().containsAmount(order.amountCents())) {
+                if (book.resolve(order.amountCents()) == order) {
+                    logger.info("[{}] ✅✅✅ 金额匹配成功: ¥{}", order.taskId(), order.amountText());
+                    scheduler.finish(order.taskId(), capturedAt);
+                    listener.onResolved(order, true);
+                    return true;
                 }
             }
         }
-        return ((double) diffPixels / totalSampled) > MOTION_THRESHOLD;
+        return false;
     }
 
-    private void printCleanLog(String taskId, int count, int skipCount, long cost, String reason, List<TextBlock> blocks) {
-        String keyInfo = blocks.stream()
+    /**
+     * 变化块包围盒外扩一个分块作为 OCR 区域，避免文字被切断；过大时直接整幅
+     */
+    private Rectangle selectOcrRegion(Rectangle dirty, BufferedImage frame, boolean isForceScan) {
+        Rectangle full = new Rectangle(0, 0, frame.getWidth(), frame.getHeight());
+        if (isForceScan || baselineSerialNum == -1 || dirty == null) return full;
+
+        Rectangle region = new Rectangle(dirty.x - TILE_SIZE, dirty.y - TILE_SIZE,
+                dirty.width + 2 * TILE_SIZE, dirty.height + 2 * TILE_SIZE).intersection(full);
+        if ((double) region.width * region.height > FULL_SCAN_AREA_RATIO * full.width * full.height) return full;
+        return region;
+    }
+
+    private static boolean isFullFrame(Rectangle region, BufferedImage frame) {
+        return region.width == frame.getWidth() && region.height == frame.getHeight();
+    }
+
+    private OcrPass recognize(BufferedImage frame, Rectangle region) throws Exception {
+        BufferedImage input = isFullFrame(region, frame)
+                ? frame
+                : frame.getSubimage(region.x, region.y, region.width, region.height);
+        long key = OcrResultCache.contentHash(input);
+        OcrResultCache.ScanResult cached = resultCache.get(key);
+        if (cached != null) return new OcrPass(cached, 0, 0, null, true);
+
+        Path framePath = null;
+        try {
+            long t0 = System.currentTimeMillis();
+            framePath = frameWriter.write(input);
+
+            long t1 = System.currentTimeMillis();
+            OcrRunner.Recognition recognition = ocr.run(framePath);
+            long cost = System.currentTimeMillis() - t1;
+            inferenceHistogram.observeMillis(cost);
+            ocrTimer.record((System.currentTimeMillis() - t0) * 1_000_000L);
+
+            if (recognition == null) return new OcrPass(null, cost, t1 - t0, null, false);
+            List<TextBlock> blocks = recognition.blocks();
+            OcrResultCache.ScanResult parsed = new OcrResultCache.ScanResult(parser.parse(blocks), blocks);
+            resultCache.put(key, parsed);
+            return new OcrPass(parsed, cost, t1 - t0, recognition.timing(), false);
+        } finally {
+            frameWriter.release(framePath);
+        }
+    }
+
+    private void printCleanLog(String taskId, int count, int skipCount, String reason, Rectangle region, BufferedImage frame, OcrPass pass) {
+        String keyInfo = pass.result().blocks().stream()
                 .map(TextBlock::getText)
                 .map(String::trim)
-                .filter(t -> t.matches(".*\\d.*") || t.contains("收款") || t.contains("￥") || t.contains("¥"))
+                .filter(NotificationParser::isKeyText)
                 .collect(Collectors.joining(" | "));
 
         if (!keyInfo.isEmpty()) {
             String skipMsg = skipCount > 0 ? " (跳过" + skipCount + "帧)" : "";
             // 日志里会显示是 [Motion] 触发还是 [Heartbeat] 触发
-            logger.info("[{}] 📸 #{}{} [{}] 耗时{}ms -> [{}]", taskId, count, skipMsg, reason, cost, keyInfo);
+            String regionMsg = isFullFrame(region, frame)
+                    ? "整幅"
+                    : region.x + "," + region.y + " " + region.width + "x" + region.height;
+            String costMsg = pass.cached() ? "缓存命中" : "耗时" + pass.cost() + "ms (写帧" + pass.writeCost() + "ms " + pass.timing() + ")";
+            logger.info("[{}] 📸 #{}{} [{}] 区域[{}] {} -> [{}]",
+                    taskId, count, skipMsg, reason, regionMsg, costMsg, keyInfo);
         }
     }
 
-    private BufferedImage captureROI() {
+    @Override
+    public void close() throws IOException {
+        frameSource.close();
+    }
+
+    private Rectangle roiArea() {
+        Dimension screenSize = frameSource.screenSize();
         int x = (int) screenSize.getWidth() - ROI_WIDTH;
         int y = (int) screenSize.getHeight() - ROI_HEIGHT;
         if (x < 0) x = 0;
         if (y < 0) y = 0;
-        return robot.createScreenCapture(new Rectangle(x, y, ROI_WIDTH, ROI_HEIGHT));
-    }
-
-    private long findSerialNumber(List<TextBlock> blocks) {
-        Pattern pattern = Pattern.compile("第(\\d+)笔");
-        for (TextBlock block : blocks) {
-            String text = block.getText().replaceAll("\\s+", "");
-            Matcher matcher = pattern.matcher(text);
-            if (matcher.find()) {
-                try {
-                    return Long.parseLong(matcher.group(1));
-                } catch (NumberFormatException ignored) {
-                }
-            }
-        }
-        return -1;
-    }
-
-    private boolean checkAmountMatch(List<TextBlock> blocks, String target, String targetNoDot) {
-        for (TextBlock block : blocks) {
-            String clean = block.getText().replaceAll("[^0-9.]", "");
-            if (clean.equals(target) || clean.contains(target) || clean.equals(targetNoDot)) return true;
-        }
-        return false;
+        return new Rectangle(x, y, ROI_WIDTH, ROI_HEIGHT);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AppConfigTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void snapshotIsTypedAndTrimmed() {
+        Properties props = new Properties();
+        props.setProperty("server.port", " 9090 ");
+        props.setProperty("auth.token", "tok ");
+        props.setProperty("callback.secret", "sec");
+        props.setProperty("order.status.max.wait.seconds", "10");
+
+        AppConfig.Snapshot snapshot = AppConfig.Snapshot.of(props);
+        assertEquals(9090, snapshot.serverPort());
+        assertEquals("tok", snapshot.authToken());
+        assertEquals(300, snapshot.orderTimeoutSeconds(), "缺省值");
+        assertEquals(10, snapshot.orderStatusMaxWaitSeconds());
+        assertEquals("", snapshot.metricsToken());
+    }
+
+    @Test
+    void rejectsUnparsableNumbers() {
+        Properties props = new Properties();
+        props.setProperty("server.port", "9090");
+        props.setProperty("auth.token", "tok");
+        props.setProperty("callback.secret", "sec");
+        props.setProperty("order.timeout.seconds", "abc");
+        assertThrows(RuntimeException.class, () -> AppConfig.Snapshot.of(props), "运行期配置项");
+
+        props.setProperty("order.timeout.seconds", "60");
+        props.setProperty("scan.heartbeat.interval.ms", "20s");
+        assertThrows(RuntimeException.class, () -> AppConfig.Snapshot.of(props), "启动期配置项");
+
+        props.setProperty("scan.heartbeat.interval.ms", "20000");
+        props.setProperty("capture.replay.speed", "1x");
+        assertThrows(RuntimeException.class, () -> AppConfig.Snapshot.of(props), "小数配置项");
+        props.setProperty("capture.replay.speed", "-1");
+        assertThrows(RuntimeException.class, () -> AppConfig.Snapshot.of(props), "负数倍速");
+        props.setProperty("capture.replay.speed", "0");
+        AppConfig.Snapshot.of(props);
+    }
+
+    @Test
+    void rejectsNonPositiveRateLimits() {
+        Properties props = new Properties();
+        props.setProperty("server.port", "9090");
+        props.setProperty("auth.token", "tok");
+        props.setProperty("callback.secret", "sec");
+        props.setProperty("security.rate.per.second", "0");
+        assertThrows(RuntimeException.class, () -> AppConfig.Snapshot.of(props));
+
+        props.setProperty("security.rate.per.second", "5");
+        props.setProperty("security.query.rate.burst", "-1");
+        assertThrows(RuntimeException.class, () -> AppConfig.Snapshot.of(props));
+    }
+
+    @Test
+    void rejectsMissingRequiredKeys() {
+        Properties props = new Properties();
+        props.setProperty("server.port", "9090");
+        props.setProperty("auth.token", "tok");
+        assertThrows(RuntimeException.class, () -> AppConfig.Snapshot.of(props));
+    }
+
+    @Test
+    void reloadSwapsSnapshotAndKeepsOldOneOnError() throws IOException {
+        Path file = dir.resolve("config.properties");
+        Files.writeString(file, "server.port=9090\nauth.token=old\ncallback.secret=s\norder.timeout.seconds=300\n");
+        assertTrue(AppConfig.reload(file));
+        assertEquals("old", AppConfig.current().authToken());
+
+        Files.writeString(file, "server.port=9090\nauth.token=new\ncallback.secret=s\norder.timeout.seconds=120\n");
+        assertTrue(AppConfig.reload(file));
+        AppConfig.Snapshot rotated = AppConfig.current();
+        assertEquals("new", rotated.authToken());
+        assertEquals(120, AppConfig.getInt("order.timeout.seconds", 0));
+
+        Files.writeString(file, "server.port=9090\nauth.token=\ncallback.secret=s\n");
+        assertFalse(AppConfig.reload(file));
+        assertSame(rotated, AppConfig.current());
+
+        Files.writeString(file, "server.port=9090\nauth.token=new\ncallback.secret=s\norder.timeout.seconds=abc\n");
+        assertFalse(AppConfig.reload(file));
+        assertSame(rotated, AppConfig.current());
+    }
+}
@@ -0,0 +1,69 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeferredMonitorTest {
+
+    @Test
+    void watchWaitsForEngineAndForwardsQueuedOrders() throws Exception {
+        CompletableFuture<PaymentMonitor> engine = new CompletableFuture<>();
+        DeferredMonitor deferred = new DeferredMonitor(engine);
+        RecordingMonitor monitor = new RecordingMonitor();
+
+        deferred.onOrderAdmitted("A");
+        deferred.onOrderAdmitted("B");
+        assertFalse(deferred.isReady());
+
+        Thread watcher = new Thread(() -> deferred.watch(new OrderBook(4), (order, success) -> {
+        }));
+        watcher.start();
+        assertFalse(monitor.watching.await(100, TimeUnit.MILLISECONDS));
+
+        engine.complete(monitor);
+        assertTrue(monitor.watching.await(5, TimeUnit.SECONDS));
+        watcher.join(5000);
+        assertTrue(deferred.isReady());
+
+        deferred.onOrderAdmitted("C");
+        assertEquals(List.of("A", "B", "C"), monitor.admitted);
+    }
+
+    @Test
+    void failedEngineIsNeverReady() {
+        CompletableFuture<PaymentMonitor> engine = new CompletableFuture<>();
+        DeferredMonitor deferred = new DeferredMonitor(engine);
+        engine.completeExceptionally(new IllegalStateException("no display"));
+
+        assertFalse(deferred.isReady());
+        deferred.onOrderAdmitted("A");
+        assertThrows(CompletionException.class, () -> deferred.watch(new OrderBook(4), (order, success) -> {
+        }));
+    }
+
+    private static final class RecordingMonitor implements PaymentMonitor {
+        final List<String> admitted = new CopyOnWriteArrayList<>();
+        final CountDownLatch watching = new CountDownLatch(1);
+
+        @Override
+        public void onOrderAdmitted(String taskId) {
+            admitted.add(taskId);
+        }
+
+        @Override
+        public void watch(OrderBook book, ResultListener listener) {
+            watching.countDown();
+        }
+    }
+}
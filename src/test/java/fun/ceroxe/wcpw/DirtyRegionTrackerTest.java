@@ -0,0 +1,61 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DirtyRegionTrackerTest {
+
+    @Test
+    void reportsBoundingBoxOfChangedTiles() {
+        BufferedImage base = new BufferedImage(380, 450, BufferedImage.TYPE_INT_RGB);
+        DirtyRegionTracker tracker = new DirtyRegionTracker(32);
+
+        assertEquals(new Rectangle(0, 0, 380, 450), tracker.diff(base), "无参考帧时为整幅");
+        tracker.acceptCurrent();
+        assertNull(tracker.diff(base));
+
+        // 单像素 (如光标) 只脏一个分块
+        BufferedImage cursor = copy(base);
+        cursor.setRGB(70, 100, 0xFFFFFF);
+        assertEquals(new Rectangle(64, 96, 32, 32), tracker.diff(cursor));
+
+        // 跨多个分块的弹窗，包围盒对齐到分块边界并裁剪到画面内
+        BufferedImage card = copy(base);
+        Graphics2D g = card.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(40, 300, 340, 150);
+        g.dispose();
+        assertEquals(new Rectangle(32, 288, 348, 162), tracker.diff(card));
+
+        // 未 accept 时参考帧不变
+        assertEquals(new Rectangle(64, 96, 32, 32), tracker.diff(cursor));
+        tracker.acceptCurrent();
+        assertNull(tracker.diff(cursor));
+    }
+
+    @Test
+    void subimageAndFallbackLayoutsHashLikeTheirPixels() {
+        BufferedImage big = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        big.setRGB(150, 150, 0x123456);
+        BufferedImage sub = big.getSubimage(100, 100, 64, 64);
+
+        BufferedImage bgr = new BufferedImage(64, 64, BufferedImage.TYPE_3BYTE_BGR);
+        bgr.setRGB(50, 50, 0x123456);
+
+        DirtyRegionTracker tracker = new DirtyRegionTracker(16);
+        tracker.diff(sub);
+        tracker.acceptCurrent();
+        assertNull(tracker.diff(bgr), "相同像素内容在不同布局下哈希一致");
+    }
+
+    private static BufferedImage copy(BufferedImage source) {
+        BufferedImage copy = new BufferedImage(source.getWidth(), source.getHeight(), source.getType());
+        copy.getGraphics().drawImage(source, 0, 0, null);
+        return copy;
+    }
+}
@@ -0,0 +1,112 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameRecorderTest {
+
+    private static final Dimension SCREEN = new Dimension(200, 100);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayReproducesRecordedPixelsAtTheirScreenPosition() throws IOException {
+        Path file = dir.resolve("frames.wcfr");
+        BufferedImage roi = frame(80, 60, 0x336699);
+        BufferedImage card = frame(20, 10, 0xFF0000);
+        try (FrameRecorder recorder = new FrameRecorder(new FixedSource(), file)) {
+            recorder.append(1_000, new Rectangle(120, 40, 80, 60), roi);
+            recorder.append(1_200, new Rectangle(130, 50, 20, 10), card);
+        }
+
+        try (ReplayFrameSource replay = ReplayFrameSource.open(file, 0)) {
+            assertEquals(SCREEN, replay.screenSize());
+            assertEquals(2, replay.frameCount());
+            assertEquals(1_200, replay.timestamp(1));
+
+            assertTrue(replay.advance());
+            assertArrayEquals(pixels(roi), pixels(replay.capture(new Rectangle(120, 40, 80, 60))));
+
+            // 第二帧只覆盖卡片区域，其余部分保留上一帧内容
+            assertTrue(replay.advance());
+            BufferedImage after = replay.capture(new Rectangle(120, 40, 80, 60));
+            assertEquals(0xFF0000, after.getRGB(10, 10) & 0xFFFFFF);
+            assertEquals(0x336699, after.getRGB(0, 0) & 0xFFFFFF);
+            assertFalse(replay.advance());
+            assertTrue(replay.exhausted());
+        }
+    }
+
+    @Test
+    void ignoresTruncatedTrailingFrame() throws IOException {
+        Path file = dir.resolve("frames.wcfr");
+        try (FrameRecorder recorder = new FrameRecorder(new FixedSource(), file)) {
+            recorder.append(1_000, new Rectangle(0, 0, 50, 50), frame(50, 50, 0x00FF00));
+            recorder.append(1_100, new Rectangle(0, 0, 50, 50), frame(50, 50, 0x0000FF));
+        }
+        // 模拟录制进程在写最后一帧时退出
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        try (ReplayFrameSource replay = ReplayFrameSource.open(file, 0)) {
+            assertEquals(1, replay.frameCount());
+            replay.advance();
+            assertEquals(0x00FF00, replay.capture(new Rectangle(0, 0, 50, 50)).getRGB(0, 0) & 0xFFFFFF);
+        }
+    }
+
+    @Test
+    void timedReplayFollowsRecordingTimeline() throws IOException {
+        Path file = dir.resolve("frames.wcfr");
+        try (FrameRecorder recorder = new FrameRecorder(new FixedSource(), file)) {
+            recorder.append(1_000, new Rectangle(0, 0, 10, 10), frame(10, 10, 0x111111));
+            recorder.append(61_000, new Rectangle(0, 0, 10, 10), frame(10, 10, 0x222222));
+        }
+
+        try (ReplayFrameSource replay = ReplayFrameSource.open(file, 1.0)) {
+            // 第一次截图对齐时间轴起点，一分钟后的帧尚未 "发生"
+            assertEquals(0x111111, replay.capture(new Rectangle(0, 0, 10, 10)).getRGB(0, 0) & 0xFFFFFF);
+            assertEquals(1, replay.position());
+        }
+    }
+
+    private static BufferedImage frame(int width, int height, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // 叠加坐标噪声，避免整帧同色掩盖错位
+                image.setRGB(x, y, rgb ^ ((x * 7 + y * 13) & 0x0F));
+            }
+        }
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static final class FixedSource implements FrameSource {
+        @Override
+        public Dimension screenSize() {
+            return SCREEN;
+        }
+
+        @Override
+        public BufferedImage capture(Rectangle area) {
+            return new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_RGB);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    @Test
+    void histogramBucketsAreCumulative() {
+        Metrics.Histogram h = Metrics.histogram("test_latency_seconds", "Test latency");
+        h.observeNanos(300_000);        // 0.3ms -> le=0.0005
+        h.observeMillis(1);             // 正好落在 le=0.001
+        h.observeMillis(40);            // le=0.05
+        h.observeMillis(60_000);        // +Inf
+        String text = Metrics.render();
+
+        assertTrue(text.contains("# TYPE test_latency_seconds histogram\n"));
+        assertTrue(text.contains("test_latency_seconds_bucket{le=\"5.0E-4\"} 1\n"), text);
+        assertTrue(text.contains("test_latency_seconds_bucket{le=\"0.001\"} 2\n"));
+        assertTrue(text.contains("test_latency_seconds_bucket{le=\"0.05\"} 3\n"));
+        assertTrue(text.contains("test_latency_seconds_bucket{le=\"30.0\"} 3\n"));
+        assertTrue(text.contains("test_latency_seconds_bucket{le=\"+Inf\"} 4\n"));
+        assertTrue(text.contains("test_latency_seconds_count 4\n"));
+        assertEquals(4, h.count());
+    }
+
+    @Test
+    void countersShareOneFamilyPerName() {
+        Metrics.Counter ok = Metrics.counter("test_requests_total", "Test requests", "result=\"ok\"");
+        Metrics.Counter bad = Metrics.counter("test_requests_total", "Test requests", "result=\"bad\"");
+        AtomicLong limited = new AtomicLong(7);
+        Metrics.counter("test_requests_total", "Test requests", "result=\"limited\"", limited::get);
+        ok.inc();
+        ok.inc();
+        bad.add(5);
+        assertSame(ok, Metrics.counter("test_requests_total", "Test requests", "result=\"ok\""), "重复注册取回同一计数器");
+
+        String text = Metrics.render();
+        assertEquals(1, text.split("# TYPE test_requests_total counter", -1).length - 1);
+        assertTrue(text.contains("test_requests_total{result=\"ok\"} 2\n"));
+        assertTrue(text.contains("test_requests_total{result=\"bad\"} 5\n"));
+        assertTrue(text.contains("test_requests_total{result=\"limited\"} 7\n"));
+    }
+
+    @Test
+    void typeConflictIsRejected() {
+        Metrics.gauge("test_gauge", "Test gauge", () -> 1);
+        assertThrows(IllegalArgumentException.class, () -> Metrics.histogram("test_gauge", "Test gauge"));
+    }
+}
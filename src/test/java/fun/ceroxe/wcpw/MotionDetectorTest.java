@@ -0,0 +1,134 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MotionDetector 与原 isFrameChanged (逐点 getRGB 网格采样) 的判定等价性测试
+ */
+class MotionDetectorTest {
+
+    private static final double THRESHOLD = 0.05;
+    private static final int WIDTH = 380;
+    private static final int HEIGHT = 450;
+
+    @Test
+    void matchesLegacyDecisionAcrossChangeRatios() {
+        Random random = new Random(42);
+        BufferedImage base = randomFrame(random, BufferedImage.TYPE_INT_RGB, WIDTH, HEIGHT);
+
+        // 覆盖阈值两侧以及恰好落在阈值附近的变化比例
+        double[] ratios = {0, 0.001, 0.01, 0.04, 0.049, 0.05, 0.051, 0.06, 0.2, 1.0};
+        for (double ratio : ratios) {
+            for (int round = 0; round < 20; round++) {
+                BufferedImage next = mutate(random, base, ratio);
+                MotionDetector detector = new MotionDetector(THRESHOLD);
+                detector.isChanged(base);
+                detector.acceptCurrent();
+                assertEquals(legacyIsFrameChanged(base, next), detector.isChanged(next),
+                        "ratio=" + ratio + " round=" + round);
+            }
+        }
+    }
+
+    @Test
+    void matchesLegacyDecisionOnFallbackAndSubimageLayouts() {
+        Random random = new Random(7);
+        int[] types = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR};
+        for (int type : types) {
+            BufferedImage base = randomFrame(random, type, 101, 77);
+            for (int round = 0; round < 50; round++) {
+                BufferedImage next = mutate(random, base, random.nextDouble() * 0.1);
+                MotionDetector detector = new MotionDetector(THRESHOLD);
+                detector.isChanged(base);
+                detector.acceptCurrent();
+                assertEquals(legacyIsFrameChanged(base, next), detector.isChanged(next), "type=" + type);
+            }
+        }
+
+        // 子图 (带偏移与行跨度) 走直接读数组路径
+        BufferedImage big = randomFrame(random, BufferedImage.TYPE_INT_RGB, 500, 600);
+        BufferedImage subA = big.getSubimage(33, 41, WIDTH, HEIGHT);
+        for (int round = 0; round < 50; round++) {
+            BufferedImage subB = mutate(random, subA, random.nextDouble() * 0.1);
+            MotionDetector detector = new MotionDetector(THRESHOLD);
+            detector.isChanged(subA);
+            detector.acceptCurrent();
+            assertEquals(legacyIsFrameChanged(subA, subB), detector.isChanged(subB));
+        }
+    }
+
+    @Test
+    void referenceFollowsAcceptedFramesOnly() {
+        Random random = new Random(3);
+        BufferedImage a = randomFrame(random, BufferedImage.TYPE_INT_RGB, WIDTH, HEIGHT);
+        BufferedImage b = mutate(random, a, 0.5);
+        MotionDetector detector = new MotionDetector(THRESHOLD);
+
+        assertTrue(detector.isChanged(a), "无参考帧时视为变化");
+        detector.acceptCurrent();
+        assertEquals(false, detector.isChanged(a));
+        assertTrue(detector.isChanged(b));
+        // 未 accept 的帧不改变参考帧
+        assertTrue(detector.isChanged(b));
+        detector.acceptCurrent();
+        assertEquals(false, detector.isChanged(b));
+        assertTrue(detector.isChanged(randomFrame(random, BufferedImage.TYPE_INT_RGB, 10, 10)), "尺寸变化视为变化");
+
+        detector.reset();
+        assertTrue(detector.isChanged(b));
+    }
+
+    /**
+     * 原 WeChatMonitorService.isFrameChanged 实现，作为判定基准
+     */
+    private static boolean legacyIsFrameChanged(BufferedImage imgA, BufferedImage imgB) {
+        if (imgA.getWidth() != imgB.getWidth() || imgA.getHeight() != imgB.getHeight()) return true;
+
+        int width = imgA.getWidth();
+        int height = imgA.getHeight();
+        long diffPixels = 0;
+        long totalSampled = 0;
+        int step = 4;
+
+        for (int y = 0; y < height; y += step) {
+            for (int x = 0; x < width; x += step) {
+                totalSampled++;
+                if (imgA.getRGB(x, y) != imgB.getRGB(x, y)) {
+                    diffPixels++;
+                }
+            }
+        }
+        return ((double) diffPixels / totalSampled) > THRESHOLD;
+    }
+
+    private static BufferedImage randomFrame(Random random, int type, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt() | 0xFF000000);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage mutate(Random random, BufferedImage source, double ratio) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int type = source.getType() == BufferedImage.TYPE_CUSTOM ? BufferedImage.TYPE_INT_RGB : source.getType();
+        BufferedImage copy = new BufferedImage(width, height, type);
+        copy.getGraphics().drawImage(source, 0, 0, null);
+        int changes = (int) (width * height * ratio);
+        for (int i = 0; i < changes; i++) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            copy.setRGB(x, y, copy.getRGB(x, y) ^ 0x00010101);
+        }
+        return copy;
+    }
+}
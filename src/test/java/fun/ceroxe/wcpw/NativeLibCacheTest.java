@@ -0,0 +1,89 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NativeLibCacheTest {
+
+    private static final List<String> RESOURCES = List.of("lib/libRapidOcr.so", "models/keys.txt", "models/missing.onnx");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reusesVerifiedFilesAcrossRestarts() throws IOException {
+        Path out = dir.resolve("cache");
+        try (URLClassLoader loader = jarLoader()) {
+            NativeLibCache.Report first = NativeLibCache.sync(loader, RESOURCES, out);
+            assertEquals(0, first.reused());
+            assertEquals(2, first.extracted());
+
+            NativeLibCache.Report second = NativeLibCache.sync(loader, RESOURCES, out);
+            assertEquals(2, second.reused());
+            assertEquals(0, second.extracted());
+        }
+        assertArrayEquals(library(), Files.readAllBytes(out.resolve("libRapidOcr.so")));
+    }
+
+    @Test
+    void reExtractsTruncatedOrChangedFiles() throws IOException {
+        Path out = dir.resolve("cache");
+        try (URLClassLoader loader = jarLoader()) {
+            NativeLibCache.sync(loader, RESOURCES, out);
+            // 上次解压被中断留下的残缺文件，以及同长度但内容不同的旧版本
+            Files.write(out.resolve("libRapidOcr.so"), new byte[10]);
+            byte[] stale = "keys-v0".getBytes();
+            Files.write(out.resolve("keys.txt"), stale);
+
+            NativeLibCache.Report report = NativeLibCache.sync(loader, RESOURCES, out);
+            assertEquals(0, report.reused());
+            assertEquals(2, report.extracted());
+        }
+        assertArrayEquals(library(), Files.readAllBytes(out.resolve("libRapidOcr.so")));
+        assertEquals("keys-v1", Files.readString(out.resolve("keys.txt")));
+    }
+
+    @Test
+    void verifiesResourcesFromDirectoryClasspath() throws IOException {
+        Path classes = dir.resolve("classes");
+        Files.createDirectories(classes.resolve("models"));
+        Files.writeString(classes.resolve("models/keys.txt"), "keys-v1");
+        Path out = dir.resolve("cache");
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, null)) {
+            assertEquals(1, NativeLibCache.sync(loader, RESOURCES, out).extracted());
+            assertEquals(1, NativeLibCache.sync(loader, RESOURCES, out).reused());
+        }
+    }
+
+    private URLClassLoader jarLoader() throws IOException {
+        Path jar = dir.resolve("natives.jar");
+        if (!Files.exists(jar)) {
+            try (OutputStream file = Files.newOutputStream(jar); JarOutputStream out = new JarOutputStream(file)) {
+                out.putNextEntry(new JarEntry("lib/libRapidOcr.so"));
+                out.write(library());
+                out.putNextEntry(new JarEntry("models/keys.txt"));
+                out.write("keys-v1".getBytes());
+            }
+        }
+        return new URLClassLoader(new URL[]{jar.toUri().toURL()}, null);
+    }
+
+    private static byte[] library() {
+        byte[] bytes = new byte[300_000];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) (i * 31 + (i >> 7));
+        return bytes;
+    }
+}
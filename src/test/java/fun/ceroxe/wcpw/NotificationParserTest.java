@@ -0,0 +1,88 @@
+package fun.ceroxe.wcpw;
+
+import com.benjaminwan.ocrlibrary.Point;
+import com.benjaminwan.ocrlibrary.TextBlock;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationParserTest {
+
+    private final NotificationParser parser = new NotificationParser();
+
+    @Test
+    void extractsSerialAndAmountsFromTypicalCard() {
+        NotificationParser.Parsed parsed = parse("微信支付", "收款到账通知", "收款金额 ￥1.39", "今日第 12 笔收款，共计￥56.70");
+        assertEquals(12, parsed.serial());
+        assertArrayEquals(new long[]{139}, parsed.amountCents(), "当日累计金额不是候选");
+        assertTrue(parsed.containsAmount(139));
+        assertFalse(parsed.containsAmount(12));
+        assertFalse(parsed.containsAmount(5670));
+    }
+
+    @Test
+    void firstSerialWins() {
+        assertEquals(7, parse("第7笔", "第8笔").serial());
+        assertEquals(-1, parse("收款成功", "¥0.01").serial());
+        assertEquals(3, parse("第99999999999999999999笔", "第3笔").serial(), "溢出的单号跳过");
+    }
+
+    @Test
+    void amountFormats() {
+        assertArrayEquals(new long[]{150}, parse("¥1.5").amountCents(), "一位小数");
+        assertArrayEquals(new long[]{100000}, parse("￥1,000.00元").amountCents(), "千分位");
+        assertArrayEquals(new long[]{139}, parse("1. 3 9").amountCents(), "数字间空白忽略");
+        assertArrayEquals(new long[]{139}, parse("￥139").amountCents(), "丢失小数点");
+        assertArrayEquals(new long[]{139}, parse("收款金额：139").amountCents(), "丢失小数点 (标签后)");
+        assertArrayEquals(new long[]{1}, parse("¥001").amountCents(), "丢失小数点 (¥0.01)");
+        assertArrayEquals(new long[]{139}, parse("￥139.").amountCents(), "末尾小数点");
+    }
+
+    @Test
+    void rejectsNonAmountNumbers() {
+        // 原实现的子串匹配会把这些误判为金额
+        assertArrayEquals(new long[0], parse("1.399").amountCents(), "三位小数");
+        assertArrayEquals(new long[0], parse("1.3.9").amountCents(), "多个小数点");
+        assertArrayEquals(new long[0], parse("14:32").amountCents(), "时间");
+        assertArrayEquals(new long[0], parse("今日第123笔").amountCents(), "单号");
+        assertArrayEquals(new long[0], parse("12").amountCents(), "两位整数");
+        assertArrayEquals(new long[0], parse("139").amountCents(), "无货币符号的整数");
+        assertArrayEquals(new long[0], parse("合计 ¥56.70").amountCents(), "合计金额");
+        assertArrayEquals(new long[0], parse("商户单号 4200001234").amountCents(), "单号");
+        assertArrayEquals(new long[]{1139}, parse("11.39").amountCents());
+        assertFalse(parse("11.39").containsAmount(139));
+    }
+
+    @Test
+    void ignoresDatesOnCard() {
+        NotificationParser.Parsed parsed = parse("收款到账通知", "2026-10-16 14:32", "收款金额 ￥20.26", "今日第 3 笔收款，共计￥30.26");
+        assertEquals(3, parsed.serial());
+        assertArrayEquals(new long[]{2026}, parsed.amountCents());
+        assertFalse(parse("2026-10-16").containsAmount(2026), "年份不是金额");
+    }
+
+    @Test
+    void keyTextFilter() {
+        assertTrue(NotificationParser.isKeyText("收款到账通知"));
+        assertTrue(NotificationParser.isKeyText("￥"));
+        assertTrue(NotificationParser.isKeyText("abc1"));
+        assertFalse(NotificationParser.isKeyText("微信支付"));
+    }
+
+    private NotificationParser.Parsed parse(String... texts) {
+        List<TextBlock> blocks = Arrays.stream(texts).map(NotificationParserTest::block).toList();
+        return parser.parse(blocks);
+    }
+
+    private static TextBlock block(String text) {
+        ArrayList<Point> box = new ArrayList<>(List.of(new Point(0, 0), new Point(10, 0), new Point(10, 10), new Point(0, 10)));
+        return new TextBlock(box, 1f, 0, 1f, 0, text, new float[0], 0, 0);
+    }
+}
@@ -0,0 +1,157 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderJournalTest {
+
+    private static final int CAPACITY = 8 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayRestoresOpenOrdersAndUndeliveredCallbacks() throws IOException {
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            journal.replay();
+            journal.recordAdmit(order("A", 139));
+            journal.recordAdmit(order("B", 200));
+            journal.recordAdmit(order("C", 300));
+            journal.recordResolved(callback("A", "SUCCESS"));
+            journal.recordResolved(callback("B", "TIMEOUT"));
+            journal.recordSettled("A", 200);
+        }
+
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            OrderJournal.Recovery recovery = journal.replay();
+            assertEquals(6, recovery.records());
+            assertEquals(List.of(order("C", 300)), recovery.orders());
+            assertEquals(1, recovery.callbacks().size());
+            OrderJournal.PendingCallback pending = recovery.callbacks().get(0);
+            assertEquals(callback("B", "TIMEOUT"), pending);
+            assertNull(recovery.orders().get(0).request().token(), "Token 不落盘");
+        }
+    }
+
+    @Test
+    void compactsWhenFullAndSurvivesReopen() throws IOException {
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            journal.replay();
+            // 远超单个文件容量，迫使多次压缩
+            for (int i = 0; i < 2000; i++) {
+                String id = "T" + i;
+                journal.recordAdmit(order(id, 100 + i));
+                journal.recordResolved(callback(id, "SUCCESS"));
+                journal.recordSettled(id, 200);
+            }
+            journal.recordAdmit(order("LAST", 999));
+            journal.checkpoint();
+        }
+
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            OrderJournal.Recovery recovery = journal.replay();
+            assertEquals(List.of(order("LAST", 999)), recovery.orders());
+            assertTrue(recovery.callbacks().isEmpty());
+        }
+    }
+
+    @Test
+    void ignoresTornTail() throws IOException {
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            journal.replay();
+            journal.recordAdmit(order("A", 139));
+            journal.recordAdmit(order("B", 200));
+        }
+
+        // 破坏最后一条记录的负载，模拟写到一半时崩溃
+        Path active = generation(dir.resolve("orders-1.wal")) > generation(dir.resolve("orders-0.wal"))
+                ? dir.resolve("orders-1.wal") : dir.resolve("orders-0.wal");
+        try (RandomAccessFile file = new RandomAccessFile(active.toFile(), "rw")) {
+            int offset = 32;
+            file.seek(offset);
+            int first = file.readInt();
+            offset += 4 + first + 4;
+            file.seek(offset + 10);
+            file.write(0x7F);
+        }
+
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            OrderJournal.Recovery recovery = journal.replay();
+            assertEquals(List.of(order("A", 139)), recovery.orders());
+        }
+    }
+
+    @Test
+    void fallsBackWhenNewestGenerationWasNotSynced() throws IOException {
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            journal.replay();
+            journal.recordAdmit(order("A", 139));
+            journal.recordAdmit(order("B", 200));
+        }
+        // 回放时压缩出新一代 (2 条基础记录)
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            journal.replay();
+        }
+
+        // 模拟系统崩溃：新一代的文件头已落盘，记录没有
+        Path newest = generation(dir.resolve("orders-1.wal")) > generation(dir.resolve("orders-0.wal"))
+                ? dir.resolve("orders-1.wal") : dir.resolve("orders-0.wal");
+        try (RandomAccessFile file = new RandomAccessFile(newest.toFile(), "rw")) {
+            file.seek(32);
+            file.write(new byte[256]);
+        }
+
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            OrderJournal.Recovery recovery = journal.replay();
+            assertEquals(List.of(order("A", 139), order("B", 200)), recovery.orders());
+        }
+    }
+
+    @Test
+    void growsInsteadOfOverwritingUnsyncedGeneration() throws IOException {
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            // 回放压缩出的新一代尚未刷盘：写满时就地扩容，不覆盖上一代
+            journal.replay();
+            for (int i = 0; i < 500; i++) journal.recordAdmit(order("T" + i, 100 + i));
+            journal.checkpoint();
+            journal.recordAdmit(order("LAST", 999));
+        }
+        assertTrue(Files.size(dir.resolve("orders-0.wal")) > CAPACITY || Files.size(dir.resolve("orders-1.wal")) > CAPACITY);
+
+        try (OrderJournal journal = OrderJournal.open(dir, CAPACITY)) {
+            OrderJournal.Recovery recovery = journal.replay();
+            assertEquals(501, recovery.orders().size());
+            assertEquals(order("LAST", 999), recovery.orders().get(500));
+        }
+    }
+
+    /**
+     * 文件头中的代数，回放使用代数较高的文件
+     */
+    private static long generation(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            raf.seek(8);
+            return raf.readLong();
+        }
+    }
+
+    private static OrderBook.Order order(String taskId, long cents) {
+        DTOs.PaymentRequest req = new DTOs.PaymentRequest(null, cents / 100.0, "1768156200000", "http://nas/cb?oid=" + taskId);
+        return new OrderBook.Order(taskId, req, cents, 1000, 301000);
+    }
+
+    private static OrderJournal.PendingCallback callback(String taskId, String status) {
+        DTOs.CallbackPayload payload = new DTOs.CallbackPayload(taskId, status, "1768156200000", 5000, 1.39, status);
+        return new OrderJournal.PendingCallback(taskId, "http://nas/cb?oid=" + taskId, payload);
+    }
+}
@@ -0,0 +1,59 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderStatusBoardTest {
+
+    @Test
+    void wakesEveryWaiterOfTheResolvedOrderOnly() {
+        OrderStatusBoard board = new OrderStatusBoard(8);
+        List<String> woken = new ArrayList<>();
+        board.await("A", p -> woken.add("A1:" + p.status()));
+        board.await("A", p -> woken.add("A2:" + p.status()));
+        board.await("B", p -> woken.add("B:" + p.status()));
+        assertEquals(3, board.waiting());
+
+        board.publish(payload("A", "SUCCESS"));
+        assertEquals(List.of("A1:SUCCESS", "A2:SUCCESS"), woken);
+        assertEquals(1, board.waiting());
+        assertEquals("SUCCESS", board.lookup("A").status());
+    }
+
+    @Test
+    void awaitOnResolvedOrderAnswersImmediatelyAndCancelledWaitersStaySilent() {
+        OrderStatusBoard board = new OrderStatusBoard(8);
+        DTOs.CallbackPayload done = payload("A", "TIMEOUT");
+        board.publish(done);
+        List<DTOs.CallbackPayload> seen = new ArrayList<>();
+        board.await("A", seen::add);
+        assertSame(done, seen.get(0));
+
+        Runnable cancel = board.await("B", seen::add);
+        cancel.run();
+        assertEquals(0, board.waiting());
+        board.publish(payload("B", "SUCCESS"));
+        assertEquals(1, seen.size());
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentResults() {
+        OrderStatusBoard board = new OrderStatusBoard(2);
+        board.publish(payload("A", "SUCCESS"));
+        board.publish(payload("B", "SUCCESS"));
+        board.publish(payload("C", "TIMEOUT"));
+        assertNull(board.lookup("A"));
+        assertTrue(board.lookup("B") != null && board.lookup("C") != null);
+    }
+
+    private static DTOs.CallbackPayload payload(String oid, String status) {
+        return new DTOs.CallbackPayload(oid, status, "1", System.currentTimeMillis(), 0.01, status);
+    }
+}
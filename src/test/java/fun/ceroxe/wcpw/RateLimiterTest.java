@@ -0,0 +1,58 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(123_456_789L);
+    private final RateLimiter limiter = new RateLimiter(5, 3, now::get);
+
+    @Test
+    void allowsBurstThenRefillsAtRate() throws Exception {
+        InetAddress ip = InetAddress.getByName("10.0.0.1");
+        for (int i = 0; i < 3; i++) assertTrue(limiter.tryAcquire(ip), "突发额度内 #" + i);
+        assertFalse(limiter.tryAcquire(ip));
+        assertEquals(1, limiter.retryAfterSeconds(ip));
+
+        now.addAndGet(199_000_000L);
+        assertFalse(limiter.tryAcquire(ip), "不足一个补充间隔");
+        now.addAndGet(1_000_000L);
+        assertTrue(limiter.tryAcquire(ip), "补充了一个令牌");
+        assertFalse(limiter.tryAcquire(ip));
+        assertEquals(3, limiter.rejected());
+    }
+
+    @Test
+    void bucketsArePerAddress() throws Exception {
+        InetAddress scanner = InetAddress.getByName("10.0.0.66");
+        InetAddress client = InetAddress.getByName("10.0.0.2");
+        for (int i = 0; i < 100; i++) limiter.tryAcquire(scanner);
+        assertTrue(limiter.tryAcquire(client), "扫描者不影响其他来源");
+    }
+
+    @Test
+    void idleAddressesAreSwept() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            limiter.tryAcquire(InetAddress.getByAddress(new byte[]{10, 1, (byte) (i >> 8), (byte) i}));
+        }
+        now.addAndGet(2_000_000_000L);
+        limiter.tryAcquire(InetAddress.getByName("10.0.0.3"));
+        assertEquals(1, limiter.trackedAddresses());
+    }
+
+    @Test
+    void rejectsNonPositiveRateOrBurst() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 3));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(-5, 3));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(Double.NaN, 3));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(5, 0));
+    }
+}
@@ -0,0 +1,169 @@
+package fun.ceroxe.wcpw;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 录制回放基准 (离线、全速、可复现)
+ * 逐帧回放 capture.record.file 录制的画面，依次执行画面变化检测 (含按录制时间计算的心跳) -> OCR -> 单号 / 金额解析，
+ * 输出 OCR 吞吐、耗时分布与检测 / 分类 / 识别分段耗时，以及检测到的每一笔新到账；给出期望金额列表时计算识别准确率。
+ * OCR 参数沿用 config.properties 的 ocr.* (可用 -Docr.mode=fast 等对比)。
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=fun.ceroxe.wcpw.ReplayBenchmark \
+ *     -Dexec.args="frames.wcfr expected.txt"
+ * </pre>
+ * expected.txt 每行一个到账金额 (如 1.39)，按到账顺序排列。
+ */
+public class ReplayBenchmark {
+
+    // 与 WeChatMonitorService 保持一致
+    private static final int ROI_WIDTH = 380;
+    private static final int ROI_HEIGHT = 450;
+    private static final double MOTION_THRESHOLD = 0.05;
+    private static final long HEARTBEAT_MS = Long.getLong("replay.heartbeat.ms", 20000);
+
+    private record Detection(long serial, long[] amountCents, long offsetMs) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 1) {
+            System.err.println("用法: ReplayBenchmark <录制文件> [期望金额文件]");
+            System.exit(2);
+        }
+        List<Long> expected = args.length > 1 ? readExpected(Paths.get(args[1])) : null;
+
+        Path config = Paths.get("config.properties");
+        if (Files.exists(config)) AppConfig.reload(config);
+        OcrRunner ocr = new OcrRunner();
+        MotionDetector motionDetector = new MotionDetector(MOTION_THRESHOLD);
+        NotificationParser parser = new NotificationParser();
+        OcrFrameWriter frameWriter = new OcrFrameWriter();
+
+        List<Detection> detections = new ArrayList<>();
+        long[] ocrNanos;
+        double[] stageMs = new double[3];
+        int frames = 0;
+        int scans = 0;
+        long started;
+        long wallNanos;
+        long recordedMs;
+
+        try (ReplayFrameSource replay = ReplayFrameSource.open(Paths.get(args[0]), 0)) {
+            if (replay.frameCount() == 0) {
+                System.err.println("❌ 录制文件中没有帧");
+                System.exit(2);
+            }
+            Dimension screen = replay.screenSize();
+            Rectangle roi = new Rectangle(Math.max(0, screen.width - ROI_WIDTH), Math.max(0, screen.height - ROI_HEIGHT),
+                    ROI_WIDTH, ROI_HEIGHT);
+            long origin = replay.timestamp(0);
+            recordedMs = replay.timestamp(replay.frameCount() - 1) - origin;
+            ocrNanos = new long[replay.frameCount()];
+            long baseline = -1;
+            long lastScanAt = Long.MIN_VALUE;
+
+            System.out.printf("🎞️ 回放 %s | %d 帧 | 录制时长 %.1fs | 屏幕 %dx%d%n",
+                    args[0], replay.frameCount(), recordedMs / 1000.0, screen.width, screen.height);
+
+            started = System.nanoTime();
+            while (replay.advance()) {
+                frames++;
+                BufferedImage image = replay.capture(roi);
+                long offset = replay.timestamp(replay.position() - 1) - origin;
+                boolean heartbeat = lastScanAt == Long.MIN_VALUE || offset - lastScanAt >= HEARTBEAT_MS;
+                if (!motionDetector.isChanged(image) && !heartbeat) continue;
+                motionDetector.acceptCurrent();
+                lastScanAt = offset;
+
+                long t0 = System.nanoTime();
+                Path framePath = frameWriter.write(image);
+                OcrRunner.Recognition recognition;
+                try {
+                    recognition = ocr.run(framePath);
+                } finally {
+                    frameWriter.release(framePath);
+                }
+                ocrNanos[scans++] = System.nanoTime() - t0;
+                if (recognition == null) continue;
+                stageMs[0] += recognition.timing().detectMs();
+                stageMs[1] += recognition.timing().classifyMs();
+                stageMs[2] += recognition.timing().recognizeMs();
+
+                NotificationParser.Parsed parsed = parser.parse(recognition.blocks());
+                if (parsed.serial() == -1) continue;
+                if (baseline != -1 && parsed.serial() > baseline) {
+                    detections.add(new Detection(parsed.serial(), parsed.amountCents(), offset));
+                }
+                baseline = Math.max(baseline, parsed.serial());
+            }
+            wallNanos = System.nanoTime() - started;
+        }
+
+        long[] sorted = Arrays.copyOf(ocrNanos, scans);
+        Arrays.sort(sorted);
+        System.out.println("==========================================");
+        System.out.println("📊 回放结果");
+        System.out.printf("   帧: %d | OCR %d 次 (跳过 %d 帧) | 耗时 %.1fs (%.1f 倍速)%n",
+                frames, scans, frames - scans, wallNanos / 1e9, wallNanos == 0 ? 0 : recordedMs * 1e6 / wallNanos);
+        System.out.printf("   OCR 吞吐: %.2f 次/s | p50 %.1fms | p99 %.1fms | max %.1fms%n",
+                scans * 1e9 / Math.max(1, wallNanos), percentileMs(sorted, 0.50), percentileMs(sorted, 0.99), percentileMs(sorted, 1.0));
+        if (scans > 0) {
+            System.out.printf("   分段均值: 检测 %.1fms | 分类 %.1fms | 识别 %.1fms%n",
+                    stageMs[0] / scans, stageMs[1] / scans, stageMs[2] / scans);
+        }
+        for (Detection d : detections) {
+            System.out.printf("   ⚡ +%dms 第%d笔 金额候选 %s%n", d.offsetMs(), d.serial(), formatAmounts(d.amountCents()));
+        }
+
+        if (expected != null) {
+            int matched = 0;
+            int cursor = 0;
+            for (Detection d : detections) {
+                if (cursor < expected.size() && contains(d.amountCents(), expected.get(cursor))) {
+                    matched++;
+                    cursor++;
+                }
+            }
+            System.out.printf("   准确率: 命中 %d/%d (%.1f%%) | 多报 %d%n", matched, expected.size(),
+                    expected.isEmpty() ? 100.0 : matched * 100.0 / expected.size(), detections.size() - matched);
+        }
+        System.out.printf("RESULT frames=%d scans=%d detections=%d ocr_per_second=%.2f ocr_p50_ms=%.1f ocr_p99_ms=%.1f%n",
+                frames, scans, detections.size(), scans * 1e9 / Math.max(1, wallNanos),
+                percentileMs(sorted, 0.50), percentileMs(sorted, 0.99));
+        System.exit(0);
+    }
+
+    private static List<Long> readExpected(Path file) throws Exception {
+        List<Long> amounts = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (!line.isBlank()) amounts.add(OrderBook.toCents(Double.parseDouble(line.trim())));
+        }
+        return amounts;
+    }
+
+    private static boolean contains(long[] values, long value) {
+        for (long v : values) {
+            if (v == value) return true;
+        }
+        return false;
+    }
+
+    private static String formatAmounts(long[] cents) {
+        List<String> parts = new ArrayList<>();
+        for (long c : cents) parts.add(String.format("¥%.2f", c / 100.0));
+        return parts.toString();
+    }
+
+    private static double percentileMs(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,236 @@
+package fun.ceroxe.wcpw;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_INT_UNALIGNED;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * X11 MIT-SHM 截屏 (Foreign Function &amp; Memory API，Java 21 预览特性)
+ * X 服务器把根窗口像素直接写入与本进程共享的内存段 (XShmGetImage)，不经过 socket 传输，也不经过 AWT 的 ColorModel 转换；
+ * 共享内存段与 XImage 跨截图复用，每次截图只把像素整块复制进新的 TYPE_INT_RGB 图像
+ * (流水线各阶段会持有帧，不能直接交出复用的共享内存)。
+ * <p>
+ * 仅在 x11-shm 构建配置下编译，运行时需 --enable-preview；由 {@link FrameSource#fromConfig()} 反射加载，任何环节失败都退回 Robot。
+ * 只支持 24/32 位 TrueColor (Xvfb、VNC 默认)。
+ */
+public class X11ShmFrameSource implements FrameSource {
+    // <X11/X.h>, <sys/ipc.h>
+    private static final int Z_PIXMAP = 2;
+    private static final int IPC_PRIVATE = 0;
+    private static final int IPC_CREAT = 01000;
+    private static final int IPC_RMID = 0;
+    private static final long ALL_PLANES = -1L;
+
+    // XImage (x86_64) 字段偏移
+    private static final long XIMAGE_DATA = 16;
+    private static final long XIMAGE_BYTES_PER_LINE = 44;
+    private static final long XIMAGE_BITS_PER_PIXEL = 48;
+    private static final long XIMAGE_RED_MASK = 56;
+    // XShmSegmentInfo { ShmSeg shmseg; int shmid; char *shmaddr; Bool readOnly; }
+    private static final long SHMINFO_SIZE = 32;
+    private static final long SHMINFO_SHMID = 8;
+    private static final long SHMINFO_SHMADDR = 16;
+    private static final long SHMINFO_READONLY = 24;
+
+    private static final MethodHandle X_OPEN_DISPLAY;
+    private static final MethodHandle X_CLOSE_DISPLAY;
+    private static final MethodHandle X_DEFAULT_SCREEN;
+    private static final MethodHandle X_ROOT_WINDOW;
+    private static final MethodHandle X_DEFAULT_VISUAL;
+    private static final MethodHandle X_DEFAULT_DEPTH;
+    private static final MethodHandle X_DISPLAY_WIDTH;
+    private static final MethodHandle X_DISPLAY_HEIGHT;
+    private static final MethodHandle X_SYNC;
+    private static final MethodHandle X_DESTROY_IMAGE;
+    private static final MethodHandle X_SHM_QUERY_EXTENSION;
+    private static final MethodHandle X_SHM_CREATE_IMAGE;
+    private static final MethodHandle X_SHM_ATTACH;
+    private static final MethodHandle X_SHM_DETACH;
+    private static final MethodHandle X_SHM_GET_IMAGE;
+    private static final MethodHandle SHMGET;
+    private static final MethodHandle SHMAT;
+    private static final MethodHandle SHMDT;
+    private static final MethodHandle SHMCTL;
+
+    static {
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup x11 = SymbolLookup.libraryLookup("libX11.so.6", Arena.global());
+        SymbolLookup xext = SymbolLookup.libraryLookup("libXext.so.6", Arena.global());
+        SymbolLookup libc = linker.defaultLookup();
+
+        X_OPEN_DISPLAY = handle(linker, x11, "XOpenDisplay", FunctionDescriptor.of(ADDRESS, ADDRESS));
+        X_CLOSE_DISPLAY = handle(linker, x11, "XCloseDisplay", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        X_DEFAULT_SCREEN = handle(linker, x11, "XDefaultScreen", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        X_ROOT_WINDOW = handle(linker, x11, "XRootWindow", FunctionDescriptor.of(JAVA_LONG, ADDRESS, JAVA_INT));
+        X_DEFAULT_VISUAL = handle(linker, x11, "XDefaultVisual", FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_INT));
+        X_DEFAULT_DEPTH = handle(linker, x11, "XDefaultDepth", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+        X_DISPLAY_WIDTH = handle(linker, x11, "XDisplayWidth", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+        X_DISPLAY_HEIGHT = handle(linker, x11, "XDisplayHeight", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+        X_SYNC = handle(linker, x11, "XSync", FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT));
+        X_DESTROY_IMAGE = handle(linker, x11, "XDestroyImage", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        X_SHM_QUERY_EXTENSION = handle(linker, xext, "XShmQueryExtension", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        X_SHM_CREATE_IMAGE = handle(linker, xext, "XShmCreateImage", FunctionDescriptor.of(ADDRESS,
+                ADDRESS, ADDRESS, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT));
+        X_SHM_ATTACH = handle(linker, xext, "XShmAttach", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        X_SHM_DETACH = handle(linker, xext, "XShmDetach", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        X_SHM_GET_IMAGE = handle(linker, xext, "XShmGetImage", FunctionDescriptor.of(JAVA_INT,
+                ADDRESS, JAVA_LONG, ADDRESS, JAVA_INT, JAVA_INT, JAVA_LONG));
+        SHMGET = handle(linker, libc, "shmget", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_LONG, JAVA_INT));
+        SHMAT = handle(linker, libc, "shmat", FunctionDescriptor.of(ADDRESS, JAVA_INT, ADDRESS, JAVA_INT));
+        SHMDT = handle(linker, libc, "shmdt", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        SHMCTL = handle(linker, libc, "shmctl", FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS));
+    }
+
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment display;
+    private final long root;
+    private final MemorySegment visual;
+    private final int depth;
+    private final Dimension screenSize;
+
+    // 当前共享内存图像，截图尺寸变化 (卡片 / 整幅 ROI 切换) 时重建
+    private ShmImage image;
+
+    private record ShmImage(int width, int height, MemorySegment ximage, MemorySegment shmInfo,
+                            MemorySegment pixels, int bytesPerLine) {
+    }
+
+    /**
+     * 连接 DISPLAY 环境变量指定的 X 服务器
+     */
+    public X11ShmFrameSource() throws IOException {
+        try {
+            display = (MemorySegment) X_OPEN_DISPLAY.invokeExact(MemorySegment.NULL);
+            if (display.equals(MemorySegment.NULL)) throw new IOException("无法连接 X 服务器 (DISPLAY=" + System.getenv("DISPLAY") + ")");
+            if ((int) X_SHM_QUERY_EXTENSION.invokeExact(display) == 0) {
+                int ignored = (int) X_CLOSE_DISPLAY.invokeExact(display);
+                throw new IOException("X 服务器不支持 MIT-SHM 扩展");
+            }
+            int screen = (int) X_DEFAULT_SCREEN.invokeExact(display);
+            root = (long) X_ROOT_WINDOW.invokeExact(display, screen);
+            visual = (MemorySegment) X_DEFAULT_VISUAL.invokeExact(display, screen);
+            depth = (int) X_DEFAULT_DEPTH.invokeExact(display, screen);
+            screenSize = new Dimension((int) X_DISPLAY_WIDTH.invokeExact(display, screen),
+                    (int) X_DISPLAY_HEIGHT.invokeExact(display, screen));
+            if (depth != 24 && depth != 32) {
+                close();
+                throw new IOException("不支持的颜色深度: " + depth);
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("X11 初始化失败", e);
+        }
+    }
+
+    @Override
+    public Dimension screenSize() {
+        return screenSize;
+    }
+
+    @Override
+    public synchronized BufferedImage capture(Rectangle area) {
+        try {
+            ShmImage shm = image;
+            if (shm == null || shm.width() != area.width || shm.height() != area.height) {
+                if (shm != null) destroy(shm);
+                image = null;
+                shm = image = create(area.width, area.height);
+            }
+            if ((int) X_SHM_GET_IMAGE.invokeExact(display, root, shm.ximage(), area.x, area.y, ALL_PLANES) == 0) {
+                throw new IllegalStateException("XShmGetImage 失败: " + area);
+            }
+
+            // BGRX 小端 -> 按 int 读取即为 0x??RRGGBB；行跨度与宽度一致时整块复制
+            BufferedImage frame = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_RGB);
+            int[] dst = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+            if (shm.bytesPerLine() == area.width * 4) {
+                MemorySegment.copy(shm.pixels(), JAVA_INT_UNALIGNED, 0, dst, 0, dst.length);
+            } else {
+                for (int y = 0; y < area.height; y++) {
+                    MemorySegment.copy(shm.pixels(), JAVA_INT_UNALIGNED, (long) y * shm.bytesPerLine(),
+                            dst, y * area.width, area.width);
+                }
+            }
+            // 高 8 位在 24 位深度下未定义，清零以免影响画面比对
+            for (int i = 0; i < dst.length; i++) dst[i] &= 0xFFFFFF;
+            return frame;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("X11 截图失败", e);
+        }
+    }
+
+    private ShmImage create(int width, int height) throws Throwable {
+        MemorySegment shmInfo = arena.allocate(SHMINFO_SIZE, 8);
+        MemorySegment ximage = (MemorySegment) X_SHM_CREATE_IMAGE.invokeExact(display, visual, depth, Z_PIXMAP,
+                MemorySegment.NULL, shmInfo, width, height);
+        if (ximage.equals(MemorySegment.NULL)) throw new IllegalStateException("XShmCreateImage 失败");
+        ximage = ximage.reinterpret(XIMAGE_RED_MASK + 24);
+
+        int bitsPerPixel = ximage.get(JAVA_INT, XIMAGE_BITS_PER_PIXEL);
+        long redMask = ximage.get(JAVA_LONG, XIMAGE_RED_MASK);
+        int bytesPerLine = ximage.get(JAVA_INT, XIMAGE_BYTES_PER_LINE);
+        if (bitsPerPixel != 32 || redMask != 0xFF0000L) {
+            int ignored = (int) X_DESTROY_IMAGE.invokeExact(ximage);
+            throw new IllegalStateException("不支持的像素格式: " + bitsPerPixel + "bpp, red=0x" + Long.toHexString(redMask));
+        }
+
+        long size = (long) bytesPerLine * height;
+        int shmid = (int) SHMGET.invokeExact(IPC_PRIVATE, size, IPC_CREAT | 0600);
+        if (shmid < 0) throw new IllegalStateException("shmget 失败");
+        MemorySegment addr = (MemorySegment) SHMAT.invokeExact(shmid, MemorySegment.NULL, 0);
+        // 标记删除：双方都 detach 后由内核回收，进程崩溃也不会泄漏共享内存
+        int ignored = (int) SHMCTL.invokeExact(shmid, IPC_RMID, MemorySegment.NULL);
+        if (addr.address() == -1L) throw new IllegalStateException("shmat 失败");
+
+        shmInfo.set(JAVA_INT, SHMINFO_SHMID, shmid);
+        shmInfo.set(ADDRESS, SHMINFO_SHMADDR, addr);
+        shmInfo.set(JAVA_INT, SHMINFO_READONLY, 0);
+        ximage.set(ADDRESS, XIMAGE_DATA, addr);
+        if ((int) X_SHM_ATTACH.invokeExact(display, shmInfo) == 0) throw new IllegalStateException("XShmAttach 失败");
+        int synced = (int) X_SYNC.invokeExact(display, 0);
+
+        return new ShmImage(width, height, ximage, shmInfo, addr.reinterpret(size), bytesPerLine);
+    }
+
+    private void destroy(ShmImage shm) throws Throwable {
+        int detached = (int) X_SHM_DETACH.invokeExact(display, shm.shmInfo());
+        int synced = (int) X_SYNC.invokeExact(display, 0);
+        // XDestroyImage 会 free(data)，共享内存由 shmdt 释放
+        shm.ximage().set(ADDRESS, XIMAGE_DATA, MemorySegment.NULL);
+        int destroyed = (int) X_DESTROY_IMAGE.invokeExact(shm.ximage());
+        int unmapped = (int) SHMDT.invokeExact(shm.pixels());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (image != null) destroy(image);
+            image = null;
+            int ignored = (int) X_CLOSE_DISPLAY.invokeExact(display);
+        } catch (Throwable e) {
+            throw new IOException("X11 关闭失败", e);
+        } finally {
+            arena.close();
+        }
+    }
+
+    private static MethodHandle handle(Linker linker, SymbolLookup lookup, String name, FunctionDescriptor descriptor) {
+        MemorySegment symbol = lookup.find(name).orElseThrow(() -> new UnsatisfiedLinkError("找不到符号: " + name));
+        return linker.downcallHandle(symbol, descriptor);
+    }
+}
@@ -0,0 +1,45 @@
+package fun.ceroxe.wcpw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 需要 X 服务器，如：xvfb-run -s "-screen 0 1280x800x24" mvn -P x11-shm test
+ */
+@EnabledIfEnvironmentVariable(named = "DISPLAY", matches = ".+")
+class X11ShmFrameSourceTest {
+
+    @Test
+    void matchesRobotCapture() throws Exception {
+        RobotFrameSource robot = new RobotFrameSource();
+        Frame window = new Frame();
+        window.setUndecorated(true);
+        window.setBackground(new Color(0x336699));
+        window.setBounds(0, 0, 200, 120);
+        window.setVisible(true);
+        try (X11ShmFrameSource shm = new X11ShmFrameSource()) {
+            assertEquals(robot.screenSize(), shm.screenSize());
+            Thread.sleep(300);
+
+            // 尺寸切换会重建共享内存图像
+            for (Rectangle area : new Rectangle[]{new Rectangle(0, 0, 380, 450), new Rectangle(150, 100, 120, 40)}) {
+                BufferedImage expected = robot.capture(area);
+                BufferedImage actual = shm.capture(area);
+                assertEquals(BufferedImage.TYPE_INT_RGB, actual.getType());
+                assertArrayEquals(pixels(expected), pixels(actual), "区域 " + area);
+            }
+        } finally {
+            window.dispose();
+        }
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}